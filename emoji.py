@@ -1,30 +1,36 @@
 import texteditor.TxtChangedCallbk_Interface
 import texteditor.TxtChangedEvent_Interface
+import texteditor.EditBatchCallbk_Interface
 
 class emojiHandler(texteditor.TxtChangedCallbk_Interface):
 
 	def notifyTxtChangeHappened(self, event):
 		
-		# Get the text detected by event :
+		# Get the text detected by event and where it ends (not always at the caret, e.g. in pasted text) :
 		txtDetected = event.getTextToDetect()
+		matchEnd = event.getMatchEnd()
 		
-		# Get caret position :
-		caretPos = api.getCaretPosition()
+		# Replace it on the editor thread, where the text can't change between the check and the edit :
+		api.editBatch(emojiReplacement(matchEnd - len(txtDetected), matchEnd, txtDetected))
 		
-		# Get text from editor :
-		txt = api.getText()	
+
+class emojiReplacement(texteditor.EditBatchCallbk_Interface):
+
+	def __init__(self, matchStart, matchEnd, txtDetected):
+		self.matchStart = matchStart
+		self.matchEnd = matchEnd
+		self.txtDetected = txtDetected
+
+	def buildEdits(self, builder):
 		
 		# Get emoji unicode char :
 		emoji = u"\U0001f60a"
 		
-		# Replace text with emoji :
-		str = txt.replace(txtDetected, emoji)		
-		
-		# Replace all text in editor :
-		api.setText(str)
+		# Replace the detected text with emoji (only if it is still there, more text may have been typed since) :
+		txt = api.getTextSnapshot()
 		
-		# Place caret back :
-		api.setCaretPosition(caretPos)
+		if self.matchEnd <= txt.length() and txt.subSequence(self.matchStart, self.matchEnd).toString() == self.txtDetected:
+			builder.replaceRange(self.matchStart, self.matchEnd, emoji)
 		
 
 api.addTextChangeCallbk(":-)", emojiHandler())
@@ -7,12 +7,25 @@ public interface API
 	void addButton(String buttonName, BtnPressCallbk_Interface callbkEvent);	
 	void highlightText(int startIndex, int endIndex);		
 	String showDialog();	
+	String showDialog(String headerText);
+	void showMessage(String message);
 	int getCaretPosition();
+	int getSelectionStart();
 	void setCaretPosition(int caretPosition);
 	String getText();
+	String getText(int startIndex, int endIndex);
+	CharSequence getTextSnapshot();
+	long getDocVersion();
 	void setText(String text);
+	void insertText(int offset, CharSequence text);
+	void deleteRange(int startIndex, int endIndex);
+	void replaceRange(int startIndex, int endIndex, CharSequence text);
+	void editBatch(EditBatchCallbk_Interface batchCallbk);
 	Locale getLocale();
 	void displayInListView(String displayName);	
+	ResultList_Interface showResultList(String title, ResultSelectedCallbk_Interface eventCallbk);
 	void addKeyPressCallbk(String keyName, KeyPressCallbk_Interface eventKeyPress);
 	void addTextChangeCallbk(String txtDetected, TxtChangedCallbk_Interface eventCallbk);
+	void addDocChangeCallbk(DocChangedCallbk_Interface eventCallbk);
+	void setSynchronousCallbacks(boolean isSynchronous);
 }
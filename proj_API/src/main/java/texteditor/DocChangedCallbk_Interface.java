@@ -0,0 +1,6 @@
+package texteditor;
+
+public interface DocChangedCallbk_Interface
+{
+	void notifyDocChangeHappened(DocChangedEvent_Interface event);
+}
@@ -0,0 +1,11 @@
+package texteditor;
+
+public interface DocChangedEvent_Interface
+{
+	DocChangedCallbk_Interface getCallbkEvent();
+	int getOffset();
+	String getRemovedText();
+	String getInsertedText();
+	boolean isDocumentReset();
+	long getDocVersion();
+}
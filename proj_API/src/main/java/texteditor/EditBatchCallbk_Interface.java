@@ -0,0 +1,6 @@
+package texteditor;
+
+public interface EditBatchCallbk_Interface
+{
+	void buildEdits(EditBuilder_Interface builder);
+}
@@ -0,0 +1,8 @@
+package texteditor;
+
+public interface EditBuilder_Interface
+{
+	void insertText(int offset, CharSequence text);
+	void deleteRange(int startIndex, int endIndex);
+	void replaceRange(int startIndex, int endIndex, CharSequence text);
+}
@@ -0,0 +1,10 @@
+package texteditor;
+
+import java.util.List;
+
+public interface ResultList_Interface
+{
+	void addResults(List<String> results);
+	void clearResults();
+	void setTitle(String title);
+}
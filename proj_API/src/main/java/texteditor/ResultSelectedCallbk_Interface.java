@@ -0,0 +1,6 @@
+package texteditor;
+
+public interface ResultSelectedCallbk_Interface
+{
+	void notifyResultSelected(ResultSelectedEvent_Interface event);
+}
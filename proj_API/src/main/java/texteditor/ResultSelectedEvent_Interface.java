@@ -0,0 +1,8 @@
+package texteditor;
+
+public interface ResultSelectedEvent_Interface
+{
+	ResultSelectedCallbk_Interface getCallbkEvent();
+	int getIndex();
+	String getResult();
+}
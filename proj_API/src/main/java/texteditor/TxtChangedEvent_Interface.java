@@ -4,4 +4,5 @@ public interface TxtChangedEvent_Interface
 {
 	TxtChangedCallbk_Interface getCallbkEvent();
 	String getTextToDetect();
+	int getMatchEnd();
 }
@@ -0,0 +1,123 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.scene.control.IndexRange;
+
+// DESCRIPTION : Keeps track of the parts of the document changed since it was last saved, as a sorted list of
+//               disjoint ranges which move along with the edits made before them. Every change also bumps a version
+//               number, so a save can tell if the text changed while it was being written.
+public class DirtyRegionTracker implements DocumentListener
+{
+	// CLASS FIELDS :
+	private static final int MAX_REGIONS 		= 1000;
+
+	private EditorTextArea textArea 			= null;
+	private ArrayList<IndexRange> regions 		= new ArrayList<>();
+	private long version 						= 0;
+
+	// CONSTRUCTOR :
+	public DirtyRegionTracker(EditorTextArea textArea)
+	{
+		this.textArea = textArea;
+		textArea.addDocumentListener(this);
+	}
+
+	@Override
+	public void textReplaced(int offset, String removedTxt, String insertedTxt)
+	{
+		// Declare variables :
+		ArrayList<IndexRange> updated 	= new ArrayList<>(regions.size() + 1);
+		int removedEnd 					= offset + removedTxt.length();
+		int delta 						= insertedTxt.length() - removedTxt.length();
+		int start 						= offset;
+		int end 						= offset + insertedTxt.length();
+		boolean isAdded 				= false;
+
+		if(removedTxt.isEmpty() && insertedTxt.isEmpty())
+		{
+			return;
+		}
+
+		// Keep the ranges before the edit, shift the ones after it, and merge the ones it touches with it :
+		for(IndexRange region : regions)
+		{
+			if(region.getEnd() < offset)
+			{
+				updated.add(region);
+			}
+			else if(region.getStart() > removedEnd)
+			{
+				if(!isAdded)
+				{
+					updated.add(new IndexRange(start, end));
+					isAdded = true;
+				}
+
+				updated.add(new IndexRange(region.getStart() + delta, region.getEnd() + delta));
+			}
+			else
+			{
+				start 	= Math.min(start, region.getStart());
+				end 	= Math.max(end, (region.getEnd() > removedEnd) ? region.getEnd() + delta : end);
+			}
+		}
+
+		if(!isAdded)
+		{
+			updated.add(new IndexRange(start, end));
+		}
+
+		// Too scattered to be worth tracking one by one :
+		if(updated.size() > MAX_REGIONS)
+		{
+			updated = new ArrayList<>(List.of(new IndexRange(updated.get(0).getStart(), updated.get(updated.size() - 1).getEnd())));
+		}
+
+		regions = updated;
+		version++;
+	}
+
+	@Override
+	public void documentReset()
+	{
+		regions.clear();
+		regions.add(new IndexRange(0, textArea.getDocument().length()));
+		version++;
+	}
+
+	// DESCRIPTION : True if the document changed since it was last saved (or loaded) :
+	public boolean isDirty()
+	{
+		return !regions.isEmpty();
+	}
+
+	// DESCRIPTION : Returns the ranges changed since the last save, in the current text :
+	public List<IndexRange> getRegions()
+	{
+		return new ArrayList<>(regions);
+	}
+
+	// DESCRIPTION : Returns the version of the text (it changes with every edit) :
+	public long getVersion()
+	{
+		return version;
+	}
+
+	// DESCRIPTION : The text at the given version was saved : nothing is dirty anymore unless it was edited since.
+	public void markSaved(long savedVersion)
+	{
+		if(savedVersion == version)
+		{
+			regions.clear();
+		}
+	}
+
+	// DESCRIPTION : The document was just loaded from its file :
+	public void clear()
+	{
+		regions.clear();
+		version++;
+	}
+}
@@ -0,0 +1,10 @@
+package texteditor;
+
+public interface DocumentListener
+{
+	// Called after the text between offset and offset+removedTxt.length() was replaced by insertedTxt :
+	void textReplaced(int offset, String removedTxt, String insertedTxt);
+
+	// Called after the whole text was replaced (file loaded, setText...) :
+	void documentReset();
+}
@@ -0,0 +1,255 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.concurrent.Task;
+
+// DESCRIPTION : Background task that reads a file in large chunks, decodes it in a single pass and returns
+//               the whole text at once, so the editor is only updated a single time when loading finishes.
+//               Line endings are normalised to '\n' (the editor drops '\r') and the separator found in
+//               the file is remembered so it can be written back on save. Invalid byte sequences don't stop
+//               the loading : each one is replaced with U+FFFD and its byte offset is recorded. The loader can
+//               also start after some already decoded text (to decode the rest again with another charset).
+public class DocumentLoader extends Task<String>
+{
+	// CLASS FIELDS :
+	private static final int CHUNK_SIZE				= 1024 * 1024;
+	private static final int MAX_RECORDED_ERRORS	= 1000;
+	private static final String REPLACEMENT 		= "\uFFFD";
+
+	private File file 								= null;
+	private CharsetDecoder decoder 					= null;
+	private String lineSeparator					= "\n";
+	private String decodedPrefix					= "";
+	private long startOffset						= 0;
+	private ArrayList<Long> malformedOffsets		= new ArrayList<>();
+	private int malformedCount						= 0;
+	private int firstMalformedChar					= -1;
+
+	// CONSTRUCTOR :
+	public DocumentLoader(File file, CharsetDecoder decoder)
+	{
+		this.file 		= file;
+		this.decoder 	= decoder;
+	}
+
+	// DESCRIPTION : Loader that keeps already decoded text and only decodes the file from a byte offset on :
+	public DocumentLoader(File file, CharsetDecoder decoder, String decodedPrefix, long startOffset, String lineSeparator)
+	{
+		this(file, decoder);
+
+		this.decodedPrefix 	= decodedPrefix;
+		this.startOffset 	= startOffset;
+		this.lineSeparator 	= lineSeparator;
+	}
+
+	// DESCRIPTION : Returns the line separator used by the file ("\r\n" or "\n") once loaded :
+	public String getLineSeparator()
+	{
+		return lineSeparator;
+	}
+
+	// DESCRIPTION : Returns the byte offsets of the first invalid sequences found (up to MAX_RECORDED_ERRORS) :
+	public List<Long> getMalformedOffsets()
+	{
+		return malformedOffsets;
+	}
+
+	// DESCRIPTION : Returns the number of invalid sequences found (all of them, even those not recorded) :
+	public int getMalformedCount()
+	{
+		return malformedCount;
+	}
+
+	// DESCRIPTION : Returns the offset in the text of the replacement char of the first invalid sequence (or -1) :
+	public int getFirstMalformedChar()
+	{
+		return firstMalformedChar;
+	}
+
+	// DESCRIPTION : Reads and decodes the file chunk by chunk :
+	@Override
+	protected String call() throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			// Declare variables :
+			long fileSize 		= channel.size();
+			long bytesRead 		= startOffset;
+			long buffOffset 	= startOffset;
+			int read 			= 0;
+			ByteBuffer inBuff	= ByteBuffer.allocateDirect(CHUNK_SIZE);
+			CharBuffer outBuff	= CharBuffer.allocate(CHUNK_SIZE);
+			LineEndFilter out	= new LineEndFilter((int)Math.min((long)decodedPrefix.length() + estimateChars(fileSize - startOffset), Integer.MAX_VALUE - 8));
+
+			out.append(CharBuffer.wrap(decodedPrefix));
+			out.foundCRLF = lineSeparator.equals("\r\n");
+
+			channel.position(startOffset);
+			decoder.reset();
+			updateProgress(startOffset, fileSize);
+
+			while((read = channel.read(inBuff)) != -1)
+			{
+				if(isCancelled())
+				{
+					return null;
+				}
+
+				bytesRead += read;
+
+				// Decode everything complete in this chunk, keep partial sequences for the next one :
+				inBuff.flip();
+				decode(inBuff, buffOffset, outBuff, out, false);
+				buffOffset += inBuff.position();
+				inBuff.compact();
+
+				updateProgress(bytesRead, fileSize);
+			}
+
+			// Flush what is left in the decoder :
+			inBuff.flip();
+			decode(inBuff, buffOffset, outBuff, out, true);
+
+			while(decoder.flush(outBuff).isOverflow())
+			{
+				drain(outBuff, out);
+			}
+
+			drain(outBuff, out);
+
+			lineSeparator = out.getLineSeparator();
+
+			return out.toString();
+		}
+	}
+
+	// DESCRIPTION : Runs the decoder over the input, draining the output buffer each time it fills up. An invalid
+	//               sequence is skipped and replaced, and the decoding goes on after it (buffOffset is the offset
+	//               in the file of the start of the input buffer).
+	private void decode(ByteBuffer inBuff, long buffOffset, CharBuffer outBuff, LineEndFilter out, boolean endOfInput)
+	{
+		CoderResult result = null;
+
+		do
+		{
+			result = decoder.decode(inBuff, outBuff, endOfInput);
+
+			drain(outBuff, out);
+
+			if(result.isError())
+			{
+				recordMalformed(buffOffset + inBuff.position(), out);
+				inBuff.position(inBuff.position() + result.length());
+			}
+		}
+		while(result.isOverflow() || result.isError());
+	}
+
+	private void recordMalformed(long byteOffset, LineEndFilter out)
+	{
+		out.append(CharBuffer.wrap(REPLACEMENT));
+
+		if(firstMalformedChar < 0)
+		{
+			firstMalformedChar = out.sb.length() - 1;
+		}
+
+		if(malformedOffsets.size() < MAX_RECORDED_ERRORS)
+		{
+			malformedOffsets.add(byteOffset);
+		}
+
+		malformedCount++;
+	}
+
+	private void drain(CharBuffer outBuff, LineEndFilter out)
+	{
+		outBuff.flip();
+		out.append(outBuff);
+		outBuff.clear();
+	}
+
+	// DESCRIPTION : Estimates the number of chars for the file so the text buffer is allocated only once :
+	private int estimateChars(long fileSize)
+	{
+		long estimate = (long)Math.ceil(fileSize * (double)decoder.averageCharsPerByte());
+
+		return (int)Math.min(estimate, Integer.MAX_VALUE - 8);
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// LINE END FILTER :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : Collects the decoded text, turning "\r\n" and lone '\r' into '\n' and dropping the other
+	//               control chars the editor refuses, so offsets in the document match the ones in the view.
+	private static class LineEndFilter
+	{
+		// CLASS FIELDS :
+		StringBuilder sb 		= null;
+		boolean pendingCR		= false;
+		boolean foundCRLF		= false;
+
+		// CONSTRUCTOR :
+		LineEndFilter(int capacity)
+		{
+			this.sb = new StringBuilder(capacity);
+		}
+
+		void append(CharBuffer chars)
+		{
+			while(chars.hasRemaining())
+			{
+				char c = chars.get();
+
+				if(pendingCR)
+				{
+					pendingCR = false;
+					sb.append('\n');
+
+					if(c == '\n')
+					{
+						foundCRLF = true;
+						continue;
+					}
+				}
+
+				if(c == '\r')
+				{
+					pendingCR = true;
+				}
+				else if(c == '\n' || c == '\t' || (c >= 0x20 && c != 0x7F))
+				{
+					sb.append(c);
+				}
+			}
+		}
+
+		String getLineSeparator()
+		{
+			return foundCRLF ? "\r\n" : "\n";
+		}
+
+		@Override
+		public String toString()
+		{
+			if(pendingCR)
+			{
+				pendingCR = false;
+				sb.append('\n');
+			}
+
+			return sb.toString();
+		}
+	}
+}
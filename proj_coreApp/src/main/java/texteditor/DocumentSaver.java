@@ -0,0 +1,357 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.ArrayDeque;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javafx.concurrent.Task;
+
+// DESCRIPTION : Background task that writes a snapshot of the document to a file with a single encoder pass, so
+//               the document can still be edited while it is saved. The snapshot's chunks are encoded straight
+//               into a small pool of direct byte buffers which are written with one gathering write once they
+//               are all full. The text goes to a temporary file first and is moved over the target at the end,
+//               so a failed (or cancelled) save never leaves a half-written file behind. A symlink is followed
+//               to the file it points to, and the new file gets the permissions and owner of the one it replaces.
+public class DocumentSaver extends Task<Void>
+{
+	// CLASS FIELDS :
+	private static final int BUFFER_SIZE 				= 256 * 1024;
+	private static final int BUFFER_COUNT 				= 4;
+	private static final ArrayDeque<ByteBuffer> pool	= new ArrayDeque<>();
+
+	private PieceTable.Snapshot snapshot 				= null;
+	private File file 									= null;
+	private CharsetEncoder encoder 						= null;
+	private String lineSeparator 						= null;
+	private long totalChars 							= 0;
+	private long charsDone 								= 0;
+	private CharBuffer carry 							= CharBuffer.allocate(2);
+
+	// CONSTRUCTOR :
+	public DocumentSaver(PieceTable.Snapshot snapshot, File file, CharsetEncoder encoder, String lineSeparator)
+	{
+		this.snapshot 		= snapshot;
+		this.file 			= file;
+		this.encoder 		= encoder;
+		this.lineSeparator 	= lineSeparator;
+		this.totalChars 	= snapshot.length();
+	}
+
+	// DESCRIPTION : Encodes and writes all chunks, then replaces the target file :
+	@Override
+	protected Void call() throws IOException
+	{
+		// Declare variables :
+		Path target 		= resolveTarget(file.toPath().toAbsolutePath());
+		Path tempFile 		= createTempFile(target);
+		ByteBuffer[] buffs 	= borrowBuffers();
+		boolean isDone		= false;
+
+		try
+		{
+			copyAttributes(target, tempFile);
+
+			try(FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+			{
+				GatheringOutput out = new GatheringOutput(channel, buffs);
+
+				encoder.reset();
+				updateProgress(0, totalChars);
+
+				for(CharBuffer chunk : snapshot.getChunks())
+				{
+					if(isCancelled())
+					{
+						return null;
+					}
+
+					writeChunk(chunk.duplicate(), out);
+					updateProgress(charsDone, totalChars);
+				}
+
+				// Finish the encoding (e.g. a trailing surrogate) and write what is left :
+				encode(CharBuffer.allocate(0), out, true);
+
+				while(encoder.flush(out.current()).isOverflow())
+				{
+					out.next();
+				}
+
+				out.flush();
+				channel.force(true);
+			}
+
+			// Replace the target with the fully written file :
+			try
+			{
+				Files.move(tempFile, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			catch(AtomicMoveNotSupportedException e)
+			{
+				Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+
+			isDone = true;
+		}
+		finally
+		{
+			returnBuffers(buffs);
+
+			if(!isDone)
+			{
+				Files.deleteIfExists(tempFile);
+			}
+		}
+
+		return null;
+	}
+
+	// DESCRIPTION : Returns the file to replace (the file a symlink points to, so the link itself is kept) :
+	private static Path resolveTarget(Path target) throws IOException
+	{
+		return Files.exists(target) ? target.toRealPath() : target;
+	}
+
+	// DESCRIPTION : Creates the temporary file next to the target. Files.createTempFile makes it readable by its owner
+	//               only, which is fine when the target's permissions are copied onto it, but a new file gets the
+	//               default permissions (the umask), as a file created with a FileOutputStream does :
+	private static Path createTempFile(Path target) throws IOException
+	{
+		if(Files.exists(target))
+		{
+			return Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+		}
+
+		while(true)
+		{
+			Path tempFile = target.resolveSibling(target.getFileName() + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+
+			try
+			{
+				return Files.createFile(tempFile);
+			}
+			catch(FileAlreadyExistsException e)
+			{
+				// Do nothing... (try another name)
+			}
+		}
+	}
+
+	// DESCRIPTION : Gives the temporary file (created readable by its owner only) the owner, group and permissions
+	//               of the file it is going to replace :
+	private static void copyAttributes(Path target, Path tempFile) throws IOException
+	{
+		PosixFileAttributeView targetView 	= Files.getFileAttributeView(target, PosixFileAttributeView.class);
+		PosixFileAttributeView tempView 	= Files.getFileAttributeView(tempFile, PosixFileAttributeView.class);
+
+		if(!Files.exists(target) || targetView == null || tempView == null)
+		{
+			return;
+		}
+
+		PosixFileAttributes attributes = targetView.readAttributes();
+
+		// (the owner first, changing it can clear some permission bits)
+		try
+		{
+			tempView.setGroup(attributes.group());
+			tempView.setOwner(attributes.owner());
+		}
+		catch(IOException e)
+		{
+			// Do nothing... (only a privileged user can give a file away, the saved file then belongs to the user)
+		}
+
+		tempView.setPermissions(attributes.permissions());
+	}
+
+	// DESCRIPTION : Encodes one chunk, writing each '\n' as the file's line separator :
+	private void writeChunk(CharBuffer chunk, GatheringOutput out) throws IOException
+	{
+		charsDone += chunk.remaining();
+
+		if(lineSeparator.equals("\n"))
+		{
+			encode(chunk, out, false);
+			return;
+		}
+
+		int end = chunk.limit();
+
+		while(chunk.position() < end)
+		{
+			// Encode up to the next newline, then the separator in its place :
+			int nl = chunk.position();
+
+			while(nl < end && chunk.get(nl) != '\n')
+			{
+				nl++;
+			}
+
+			chunk.limit(nl);
+			encode(chunk, out, false);
+			chunk.limit(end);
+
+			if(nl < end)
+			{
+				encode(CharBuffer.wrap(lineSeparator), out, false);
+				chunk.position(nl + 1);
+			}
+		}
+	}
+
+	// DESCRIPTION : Encodes the chars. The encoder leaves a trailing high surrogate in the buffer until it sees the
+	//               char after it, and the chunks are not kept, so that char is carried over to the next call :
+	private void encode(CharBuffer chars, GatheringOutput out, boolean endOfInput) throws IOException
+	{
+		// Complete the pair left over by the previous call (or encode the lone surrogate at the end of the text) :
+		if(carry.position() > 0 && (chars.hasRemaining() || endOfInput))
+		{
+			if(chars.hasRemaining())
+			{
+				carry.put(chars.get());
+			}
+
+			carry.flip();
+			encodeBuffer(carry, out, endOfInput);
+			carry.clear();
+		}
+
+		encodeBuffer(chars, out, endOfInput);
+
+		if(chars.hasRemaining())
+		{
+			carry.put(chars.get());
+		}
+	}
+
+	private void encodeBuffer(CharBuffer chars, GatheringOutput out, boolean endOfInput) throws IOException
+	{
+		CoderResult result = null;
+
+		while(true)
+		{
+			result = encoder.encode(chars, out.current(), endOfInput);
+
+			if(result.isError())
+			{
+				result.throwException();
+			}
+
+			if(!result.isOverflow())
+			{
+				break;
+			}
+
+			out.next();
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// BUFFER POOL :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Takes buffers from the pool (direct buffers are expensive to allocate, so they are reused across saves) :
+	private static ByteBuffer[] borrowBuffers()
+	{
+		ByteBuffer[] buffs = new ByteBuffer[BUFFER_COUNT];
+
+		synchronized(pool)
+		{
+			for(int i = 0; i < BUFFER_COUNT; i++)
+			{
+				buffs[i] = pool.isEmpty() ? ByteBuffer.allocateDirect(BUFFER_SIZE) : pool.pop();
+				buffs[i].clear();
+			}
+		}
+
+		return buffs;
+	}
+
+	private static void returnBuffers(ByteBuffer[] buffs)
+	{
+		synchronized(pool)
+		{
+			for(ByteBuffer buff : buffs)
+			{
+				pool.push(buff);
+			}
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// GATHERING OUTPUT :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : Fills the buffers one after the other and writes them all at once when the last one is full :
+	private static class GatheringOutput
+	{
+		// CLASS FIELDS :
+		FileChannel channel 	= null;
+		ByteBuffer[] buffs 		= null;
+		int current 			= 0;
+
+		// CONSTRUCTOR :
+		GatheringOutput(FileChannel channel, ByteBuffer[] buffs)
+		{
+			this.channel 	= channel;
+			this.buffs 		= buffs;
+		}
+
+		ByteBuffer current()
+		{
+			return buffs[current];
+		}
+
+		// DESCRIPTION : Moves on to the next buffer, writing them all out if none is left :
+		void next() throws IOException
+		{
+			current++;
+
+			if(current == buffs.length)
+			{
+				flush();
+			}
+		}
+
+		// DESCRIPTION : Writes the filled buffers with a single gathering write :
+		void flush() throws IOException
+		{
+			int count 		= Math.min(current + 1, buffs.length);
+			long remaining 	= 0;
+
+			for(int i = 0; i < count; i++)
+			{
+				buffs[i].flip();
+				remaining += buffs[i].remaining();
+			}
+
+			while(remaining > 0)
+			{
+				remaining -= channel.write(buffs, 0, count);
+			}
+
+			for(ByteBuffer buff : buffs)
+			{
+				buff.clear();
+			}
+
+			current = 0;
+		}
+	}
+}
@@ -0,0 +1,615 @@
+package texteditor;
+
+import javafx.geometry.Point2D;
+import javafx.scene.control.ContentDisplay;
+import javafx.scene.control.IndexedCell;
+import javafx.scene.control.IndexRange;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.Skin;
+import javafx.scene.control.skin.CellSkinBase;
+import javafx.scene.control.skin.VirtualFlow;
+import javafx.scene.input.Clipboard;
+import javafx.scene.input.ClipboardContent;
+import javafx.scene.input.KeyEvent;
+import javafx.scene.input.MouseButton;
+import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Region;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Path;
+import javafx.scene.text.Text;
+
+// DESCRIPTION : Virtualised view of an EditorTextArea's document (a TextArea would lay out the whole text as a
+//               single Text node) : a VirtualFlow only creates cells for the lines in the viewport, each cell
+//               reads its line from the document, and cells are recycled as the view scrolls. Keys and mouse
+//               clicks are turned into edits and caret moves on the EditorTextArea, so everything that works on
+//               it (the plug-in API, the keymap) keeps working on what is shown.
+public class DocumentView extends Region
+{
+	// CLASS FIELDS :
+	private static final Color SELECTION_COLOR 	= Color.rgb(0, 120, 215, 0.3);
+
+	private EditorTextArea textArea 			= null;
+	private LineFlow flow 						= new LineFlow();
+	private boolean isLinesDirty 				= true;
+	private boolean isCaretMoved 				= false;
+	private boolean isVerticalMove 				= false;
+	private int preferredColumn 				= -1;
+
+	// CONSTRUCTOR :
+	public DocumentView(EditorTextArea textArea)
+	{
+		this.textArea = textArea;
+
+		flow.setCellFactory(lineFlow -> new LineCell());
+		flow.setPannable(false);
+		getChildren().add(flow);
+		getStyleClass().add("text-area");
+		setFocusTraversable(true);
+
+		// Only the visible lines are updated, on the next layout (after the document and its line index are both
+		// up to date) :
+		textArea.addDocumentListener(new DocumentListener()
+		{
+			@Override
+			public void textReplaced(int offset, String removedTxt, String insertedTxt)
+			{
+				isLinesDirty = true;
+				requestLayout();
+			}
+
+			@Override
+			public void documentReset()
+			{
+				isLinesDirty = true;
+				requestLayout();
+			}
+		});
+
+		textArea.caretPositionProperty().addListener(observable -> caretMoved());
+		textArea.anchorProperty().addListener(observable -> caretMoved());
+		focusedProperty().addListener(observable -> requestLayout());
+
+		addEventHandler(KeyEvent.KEY_PRESSED, this::keyPressed);
+		addEventHandler(KeyEvent.KEY_TYPED, this::keyTyped);
+		addEventHandler(MouseEvent.MOUSE_PRESSED, this::mousePressed);
+		addEventHandler(MouseEvent.MOUSE_DRAGGED, this::mouseDragged);
+	}
+
+	@Override
+	protected void layoutChildren()
+	{
+		flow.resizeRelocate(0, 0, getWidth(), getHeight());
+
+		if(isLinesDirty)
+		{
+			isLinesDirty = false;
+			flow.setCellCount(textArea.getLineIndex().getLineCount());
+			flow.rebuild();
+		}
+
+		if(isCaretMoved)
+		{
+			flow.scrollTo(caretLine());
+		}
+
+		flow.layout();
+
+		for(LineCell cell : flow.cells())
+		{
+			cell.updateSelection();
+		}
+
+		if(isCaretMoved)
+		{
+			isCaretMoved = false;
+			scrollToCaretColumn();
+		}
+	}
+
+	private void caretMoved()
+	{
+		if(!isVerticalMove)
+		{
+			preferredColumn = -1;
+		}
+
+		isCaretMoved = true;
+		requestLayout();
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// KEYBOARD :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Caret moves, deletions and the usual shortcuts (the keys not handled here go on to the scene's
+	//               keymap handler) :
+	private void keyPressed(KeyEvent event)
+	{
+		// Declare variables :
+		boolean shift 		= event.isShiftDown();
+		boolean shortcut 	= event.isShortcutDown();
+		int caret 			= textArea.getCaretPosition();
+		int line 			= caretLine();
+
+		switch(event.getCode())
+		{
+			case LEFT: 			moveCaret(shortcut ? wordStart(caret) : previousChar(caret), shift); 	break;
+			case RIGHT: 		moveCaret(shortcut ? wordEnd(caret) : nextChar(caret), shift); 			break;
+			case UP: 			moveToLine(line - 1, shift); 											break;
+			case DOWN: 			moveToLine(line + 1, shift); 											break;
+			case PAGE_UP: 		moveToLine(line - visibleLines(), shift); 								break;
+			case PAGE_DOWN: 	moveToLine(line + visibleLines(), shift); 								break;
+			case HOME: 			moveCaret(shortcut ? 0 : lineStart(line), shift); 						break;
+			case END: 			moveCaret(shortcut ? textArea.getLength() : lineEnd(line), shift); 		break;
+			case BACK_SPACE: 	deleteTo(previousChar(caret)); 											break;
+			case DELETE: 		deleteTo(nextChar(caret)); 												break;
+			case ENTER: 		replaceSelection("\n"); 												break;
+			case TAB: 			replaceSelection("\t"); 												break;
+
+			default:
+				if(!shortcut || !handleShortcut(event))
+				{
+					return;
+				}
+		}
+
+		event.consume();
+	}
+
+	// DESCRIPTION : Runs the shortcut of the key, if any (with Alt held the keys are left to the keymap, e.g. Shift+Alt+Ctrl+Z) :
+	private boolean handleShortcut(KeyEvent event)
+	{
+		if(event.isAltDown())
+		{
+			return false;
+		}
+
+		switch(event.getCode())
+		{
+			case A: textArea.selectRange(0, textArea.getLength()); 	return true;
+			case C: copySelection(); 								return true;
+			case X: copySelection(); replaceSelection(""); 			return true;
+			case V: pasteClipboard(); 								return true;
+			case Z: if(event.isShiftDown()) textArea.redoEdit(); else textArea.undoEdit(); return true;
+			case Y: textArea.redoEdit(); 							return true;
+			default: 												return false;
+		}
+	}
+
+	// DESCRIPTION : Inserts typed chars (not the chars sent along with shortcuts) :
+	private void keyTyped(KeyEvent event)
+	{
+		String typed = event.getCharacter();
+
+		// (Ctrl+Alt is AltGr on some keyboards, which does type chars, Alt alone is left to the keymap)
+		if((event.isControlDown() || event.isMetaDown() || event.isAltDown()) && !(event.isControlDown() && event.isAltDown()))
+		{
+			return;
+		}
+
+		if(typed.isEmpty() || typed.charAt(0) < 0x20 || typed.charAt(0) == 0x7F)
+		{
+			return;
+		}
+
+		replaceSelection(typed);
+		event.consume();
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// MOUSE :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	private void mousePressed(MouseEvent event)
+	{
+		requestFocus();
+
+		if(event.getButton() != MouseButton.PRIMARY || isOnScrollBar(event))
+		{
+			return;
+		}
+
+		int offset = offsetAt(event.getSceneX(), event.getSceneY());
+
+		if(event.getClickCount() == 2)
+		{
+			textArea.selectRange(wordStart(offset), wordEnd(offset));
+		}
+		else
+		{
+			moveCaret(offset, event.isShiftDown());
+		}
+	}
+
+	private void mouseDragged(MouseEvent event)
+	{
+		if(event.getButton() == MouseButton.PRIMARY && !isOnScrollBar(event))
+		{
+			textArea.selectPositionCaret(offsetAt(event.getSceneX(), event.getSceneY()));
+		}
+	}
+
+	private boolean isOnScrollBar(MouseEvent event)
+	{
+		for(Object node = event.getTarget(); node instanceof javafx.scene.Node; node = ((javafx.scene.Node)node).getParent())
+		{
+			if(node instanceof ScrollBar)
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	// DESCRIPTION : Returns the document offset closest to a point of the scene (above the lines shown is their
+	//               first line, below them the last one) :
+	private int offsetAt(double sceneX, double sceneY)
+	{
+		// Declare variables :
+		LineCell closest 	= null;
+		double distance 	= Double.MAX_VALUE;
+
+		for(LineCell cell : flow.cells())
+		{
+			if(!cell.isVisible() || cell.getIndex() < 0 || cell.getIndex() >= flow.getCellCount())
+			{
+				continue;
+			}
+
+			double top 		= cell.localToScene(0, 0).getY();
+			double bottom 	= top + cell.getHeight();
+			double d 		= (sceneY < top) ? (top - sceneY) : (sceneY > bottom) ? (sceneY - bottom) : 0;
+
+			if(d < distance)
+			{
+				distance 	= d;
+				closest 	= cell;
+			}
+		}
+
+		return (closest == null) ? textArea.getLength() : closest.offsetAt(sceneX);
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// EDITING :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	private void moveCaret(int offset, boolean isExtendingSelection)
+	{
+		if(isExtendingSelection)
+		{
+			textArea.selectPositionCaret(offset);
+		}
+		else
+		{
+			textArea.positionCaret(offset);
+		}
+	}
+
+	// DESCRIPTION : Moves the caret to another line, keeping the column it had before the first vertical move :
+	private void moveToLine(int line, boolean isExtendingSelection)
+	{
+		// Declare variables :
+		int lastLine 	= textArea.getLineIndex().getLineCount() - 1;
+		int target 		= Math.max(0, Math.min(line, lastLine));
+
+		if(preferredColumn < 0)
+		{
+			preferredColumn = textArea.getCaretPosition() - lineStart(caretLine());
+		}
+
+		isVerticalMove = true;
+
+		try
+		{
+			moveCaret(lineStart(target) + Math.min(preferredColumn, lineEnd(target) - lineStart(target)), isExtendingSelection);
+		}
+		finally
+		{
+			isVerticalMove = false;
+		}
+	}
+
+	// DESCRIPTION : Deletes the selection, or the text between the caret and the given offset if nothing is selected :
+	private void deleteTo(int offset)
+	{
+		// Declare variables :
+		IndexRange selection 	= textArea.getSelection();
+		int caret 				= textArea.getCaretPosition();
+
+		if(!textArea.isEditable())
+		{
+			return;
+		}
+
+		if(selection.getLength() > 0)
+		{
+			textArea.replaceSelection("");
+		}
+		else if(offset != caret)
+		{
+			textArea.deleteText(Math.min(offset, caret), Math.max(offset, caret));
+		}
+	}
+
+	private void replaceSelection(String text)
+	{
+		if(textArea.isEditable())
+		{
+			textArea.replaceSelection(text);
+		}
+	}
+
+	private void copySelection()
+	{
+		IndexRange selection = textArea.getSelection();
+
+		if(selection.getLength() > 0)
+		{
+			ClipboardContent content = new ClipboardContent();
+			content.putString(textArea.getDocument().getText(selection.getStart(), selection.getEnd()));
+			Clipboard.getSystemClipboard().setContent(content);
+		}
+	}
+
+	private void pasteClipboard()
+	{
+		String text = Clipboard.getSystemClipboard().getString();
+
+		if(text != null)
+		{
+			replaceSelection(text.replace("\r\n", "\n").replace('\r', '\n'));
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// OFFSETS :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	private int caretLine()
+	{
+		return textArea.getLineIndex().getLineOfOffset(textArea.getCaretPosition());
+	}
+
+	private int lineStart(int line)
+	{
+		return textArea.getLineIndex().getLineStart(line);
+	}
+
+	// DESCRIPTION : Returns the offset of the end of the line (before its line break) :
+	private int lineEnd(int line)
+	{
+		LineIndex lineIndex = textArea.getLineIndex();
+
+		return (line + 1 < lineIndex.getLineCount()) ? lineIndex.getLineStart(line + 1) - 1 : textArea.getDocument().length();
+	}
+
+	private int visibleLines()
+	{
+		LineCell first 	= flow.getFirstVisibleCell();
+		LineCell last 	= flow.getLastVisibleCell();
+
+		return (first == null || last == null) ? 1 : Math.max(1, last.getIndex() - first.getIndex());
+	}
+
+	// DESCRIPTION : Steps over a whole surrogate pair :
+	private int previousChar(int offset)
+	{
+		PieceTable document = textArea.getDocument();
+
+		if(offset >= 2 && Character.isLowSurrogate(document.charAt(offset - 1)) && Character.isHighSurrogate(document.charAt(offset - 2)))
+		{
+			return offset - 2;
+		}
+
+		return Math.max(offset - 1, 0);
+	}
+
+	private int nextChar(int offset)
+	{
+		PieceTable document = textArea.getDocument();
+
+		if(offset + 1 < document.length() && Character.isHighSurrogate(document.charAt(offset)) && Character.isLowSurrogate(document.charAt(offset + 1)))
+		{
+			return offset + 2;
+		}
+
+		return Math.min(offset + 1, document.length());
+	}
+
+	// DESCRIPTION : Returns the start of the word before the offset (skipping the spaces before it first) :
+	private int wordStart(int offset)
+	{
+		PieceTable document = textArea.getDocument();
+
+		while(offset > 0 && !isWordChar(document.charAt(offset - 1)) && document.charAt(offset - 1) != '\n')
+		{
+			offset--;
+		}
+
+		while(offset > 0 && isWordChar(document.charAt(offset - 1)))
+		{
+			offset--;
+		}
+
+		return offset;
+	}
+
+	// DESCRIPTION : Returns the end of the word after the offset (skipping the spaces before it first) :
+	private int wordEnd(int offset)
+	{
+		PieceTable document = textArea.getDocument();
+
+		while(offset < document.length() && !isWordChar(document.charAt(offset)) && document.charAt(offset) != '\n')
+		{
+			offset++;
+		}
+
+		while(offset < document.length() && isWordChar(document.charAt(offset)))
+		{
+			offset++;
+		}
+
+		return offset;
+	}
+
+	private static boolean isWordChar(char c)
+	{
+		return Character.isLetterOrDigit(c) || c == '_';
+	}
+
+	// DESCRIPTION : Scrolls sideways so the caret stays in the viewport :
+	private void scrollToCaretColumn()
+	{
+		// Declare variables :
+		LineCell cell 	= flow.getVisibleCell(caretLine());
+		ScrollBar hbar 	= flow.hbar();
+		double width 	= flow.getWidth() - 20;
+
+		if(cell == null || !hbar.isVisible())
+		{
+			return;
+		}
+
+		double caretX = cell.caretX();
+
+		if(caretX < hbar.getValue())
+		{
+			hbar.setValue(Math.max(caretX - 20, hbar.getMin()));
+		}
+		else if(caretX > hbar.getValue() + width)
+		{
+			hbar.setValue(Math.min(caretX - width + 20, hbar.getMax()));
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// LINE FLOW :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : VirtualFlow giving access to what the view needs of it :
+	private static class LineFlow extends VirtualFlow<LineCell>
+	{
+		// DESCRIPTION : Updates the cells in use (their line may have changed) without creating new ones :
+		void rebuild()
+		{
+			rebuildCells();
+		}
+
+		java.util.List<LineCell> cells()
+		{
+			return getCells();
+		}
+
+		ScrollBar hbar()
+		{
+			return getHbar();
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// LINE CELL :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : Shows one line : its text, the part of the selection on it, and the caret if it is on it.
+	private class LineCell extends IndexedCell<String>
+	{
+		// CLASS FIELDS :
+		private Text text 				= new Text();
+		private Path selectionPath 		= new Path();
+		private Path caretPath 			= new Path();
+		private int lineStart 			= 0;
+
+		// CONSTRUCTOR :
+		LineCell()
+		{
+			selectionPath.setFill(SELECTION_COLOR);
+			selectionPath.setStroke(null);
+			selectionPath.setManaged(false);
+			caretPath.setManaged(false);
+			caretPath.setStrokeWidth(1.5);
+
+			setGraphic(new Pane(selectionPath, text, caretPath));
+			setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
+		}
+
+		@Override
+		protected Skin<?> createDefaultSkin()
+		{
+			return new CellSkinBase<>(this);
+		}
+
+		@Override
+		public void updateIndex(int line)
+		{
+			super.updateIndex(line);
+
+			if(line < 0 || line >= textArea.getLineIndex().getLineCount())
+			{
+				text.setText("");
+				lineStart = 0;
+			}
+			else
+			{
+				lineStart = lineStart(line);
+				text.setText(textArea.getDocument().getText(lineStart, lineEnd(line)));
+			}
+
+			updateSelection();
+		}
+
+		// DESCRIPTION : Shows the part of the selection on this line, and the caret if it is on this line :
+		void updateSelection()
+		{
+			// Declare variables :
+			IndexRange selection 	= textArea.getSelection();
+			int lineEnd 			= lineStart + text.getText().length();
+			int caret 				= textArea.getCaretPosition();
+			boolean isLine 			= getIndex() >= 0 && getIndex() < flow.getCellCount();
+
+			if(isLine && selection.getLength() > 0 && selection.getStart() <= lineEnd && selection.getEnd() > lineStart)
+			{
+				text.setSelectionStart(Math.max(selection.getStart(), lineStart) - lineStart);
+				text.setSelectionEnd(Math.min(selection.getEnd(), lineEnd) - lineStart);
+				selectionPath.getElements().setAll(text.getSelectionShape());
+			}
+			else
+			{
+				text.setSelectionStart(-1);
+				text.setSelectionEnd(-1);
+				selectionPath.getElements().clear();
+			}
+
+			if(isLine && caret >= lineStart && caret <= lineEnd && DocumentView.this.isFocused())
+			{
+				text.setCaretPosition(caret - lineStart);
+				caretPath.getElements().setAll(text.getCaretShape());
+				caretPath.setVisible(true);
+			}
+			else
+			{
+				caretPath.setVisible(false);
+			}
+		}
+
+		// DESCRIPTION : Returns the offset in the document closest to a point of the scene on this line :
+		int offsetAt(double sceneX)
+		{
+			Point2D point 	= text.sceneToLocal(sceneX, text.localToScene(0, text.getLayoutBounds().getCenterY()).getY());
+			int index 		= text.hitTest(point).getInsertionIndex();
+
+			return lineStart + Math.max(0, Math.min(index, text.getText().length()));
+		}
+
+		double caretX()
+		{
+			return caretPath.getBoundsInParent().getMinX();
+		}
+	}
+}
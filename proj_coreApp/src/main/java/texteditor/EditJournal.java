@@ -0,0 +1,557 @@
+package texteditor;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// DESCRIPTION : Append-only journal of the edits made to a document since it was last saved, kept next to the file
+//               (or in the user's folder for a new document) so the edits can be replayed onto the saved file if the
+//               editor dies. The FX thread only queues the edits : a writer thread appends them to the journal and
+//               syncs it to disk every FLUSH_INTERVAL_MILLIS, so a burst of edits costs one write and one sync.
+//
+//               Journal file : a header (the length and date of the saved file the edits apply to, and its encoding),
+//               then one record per edit or batch of edits : [length][edits][CRC32]. A record cut short by a crash
+//               fails its CRC, and the replay stops there.
+public class EditJournal
+{
+	// CLASS FIELDS :
+	private static final int MAGIC 							= 0x54454A31;
+	private static final long FLUSH_INTERVAL_MILLIS 		= 200;
+	private static final long CLOSE_TIMEOUT_MILLIS 			= 5_000;
+
+	private ConcurrentLinkedQueue<Object> pending 			= new ConcurrentLinkedQueue<>();
+	private ScheduledExecutorService writer 				= null;
+	private ArrayDeque<Long> checkpoints 					= new ArrayDeque<>();
+	private Path path 										= null;
+	private FileChannel channel 							= null;
+	private long headerLength 								= 0;
+	private volatile boolean isFailed 						= false;
+
+	// CONSTRUCTOR : Starts a journal for the document saved in baseFile (null for a new document). If keepLength is
+	//               not negative, the journal already holds the edits to keep (up to that length, see Recovery) and
+	//               the new edits are appended to them.
+	public EditJournal(Path path, File baseFile, Charset charset, long keepLength)
+	{
+		this.path 	= path;
+		this.writer = Executors.newSingleThreadScheduledExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "edit-journal");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		writer.execute(() ->
+		{
+			try
+			{
+				Files.createDirectories(path.toAbsolutePath().getParent());
+				channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+				if(keepLength >= 0)
+				{
+					channel.truncate(keepLength);
+					headerLength = readHeader(channel).length;
+				}
+				else
+				{
+					channel.truncate(0);
+					headerLength = writeHeader(channel, baseFile, charset);
+				}
+
+				channel.position(channel.size());
+				channel.force(true);
+			}
+			catch(IOException e)
+			{
+				fail();
+			}
+		});
+
+		writer.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	// DESCRIPTION : Returns where the journal of a file is kept (a hidden file next to it) :
+	public static Path pathFor(File file)
+	{
+		if(file == null)
+		{
+			return Paths.get(System.getProperty("user.home"), ".texteditor", "untitled.journal");
+		}
+
+		return file.toPath().toAbsolutePath().resolveSibling("." + file.getName() + ".journal");
+	}
+
+	// DESCRIPTION : Queues an edit (called on the FX thread, the writer thread writes it) :
+	public void recordEdit(int offset, String removedTxt, String insertedTxt)
+	{
+		if(!isFailed)
+		{
+			pending.add(Collections.singletonList(new UndoManager.Edit(offset, removedTxt, insertedTxt)));
+		}
+	}
+
+	// DESCRIPTION : Queues a batch of edits (sorted, non-overlapping, offsets in the text before the batch) :
+	public void recordBatch(List<UndoManager.Edit> edits)
+	{
+		if(!isFailed)
+		{
+			pending.add(edits);
+		}
+	}
+
+	// DESCRIPTION : Marks the point a save takes its snapshot at : once the save is done, only the edits after this
+	//               point still have to be journaled (see saved/saveAbandoned, called in the same order as the saves).
+	public void checkpoint()
+	{
+		queueCommand(() -> checkpoints.addLast(channel.position()));
+	}
+
+	// DESCRIPTION : The document was saved to a file at the oldest checkpoint : the journal moves next to that file
+	//               and keeps only the edits made after the checkpoint.
+	public void saved(File file, Charset charset)
+	{
+		queueCommand(() ->
+		{
+			long checkpoint = checkpoints.pollFirst();
+			Path newPath 	= pathFor(file);
+			Path tempFile 	= Files.createTempFile(newPath.getParent(), newPath.getFileName().toString(), ".tmp");
+			long newHeaderLength;
+
+			// Write the new journal aside, then swap it in (a crash in between leaves the old journal, still valid) :
+			try(FileChannel newChannel = FileChannel.open(tempFile, StandardOpenOption.WRITE))
+			{
+				newHeaderLength = writeHeader(newChannel, file, charset);
+
+				for(long position = checkpoint, end = channel.size(); position < end; )
+				{
+					position += channel.transferTo(position, end - position, newChannel);
+				}
+
+				newChannel.force(true);
+			}
+			catch(IOException e)
+			{
+				Files.deleteIfExists(tempFile);
+				throw e;
+			}
+
+			channel.close();
+			moveReplacing(tempFile, newPath);
+
+			if(!newPath.equals(path))
+			{
+				Files.deleteIfExists(path);
+			}
+
+			// The later checkpoints move along with their records :
+			ArrayDeque<Long> moved = new ArrayDeque<>(checkpoints.size());
+
+			for(long position : checkpoints)
+			{
+				moved.addLast(position - checkpoint + newHeaderLength);
+			}
+
+			checkpoints 	= moved;
+			path 			= newPath;
+			headerLength 	= newHeaderLength;
+			channel 		= FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			channel.position(channel.size());
+		});
+	}
+
+	// DESCRIPTION : The save at the oldest checkpoint failed or was cancelled :
+	public void saveAbandoned()
+	{
+		queueCommand(() -> checkpoints.pollFirst());
+	}
+
+	// DESCRIPTION : Writes the queued edits and stops the writer thread. The journal file is deleted if it holds no
+	//               edits, otherwise it is kept so the edits can be recovered the next time the file is opened.
+	public void close()
+	{
+		queueCommand(() ->
+		{
+			boolean isEmpty = channel.size() <= headerLength;
+
+			channel.close();
+
+			if(isEmpty)
+			{
+				Files.deleteIfExists(path);
+			}
+		});
+
+		writer.execute(this::flush);
+		writer.shutdown();
+
+		try
+		{
+			writer.awaitTermination(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// WRITER THREAD :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Commands go through the same queue as the edits, so they see exactly the edits queued before them :
+	private void queueCommand(JournalCommand command)
+	{
+		if(!isFailed)
+		{
+			pending.add(command);
+			writer.execute(this::flush);
+		}
+	}
+
+	// DESCRIPTION : Appends the queued edits (running the commands in between) and syncs the journal once :
+	@SuppressWarnings("unchecked")
+	private void flush()
+	{
+		// Declare variables :
+		ByteArrayOutputStream bytes 	= new ByteArrayOutputStream();
+		boolean isWritten 				= false;
+		Object entry 					= null;
+
+		try
+		{
+			while(!isFailed && (entry = pending.poll()) != null)
+			{
+				if(entry instanceof JournalCommand)
+				{
+					isWritten |= write(bytes);
+					((JournalCommand)entry).run();
+				}
+				else
+				{
+					appendRecord(bytes, (List<UndoManager.Edit>)entry);
+				}
+			}
+
+			isWritten |= write(bytes);
+
+			if(isWritten && channel.isOpen())
+			{
+				channel.force(false);
+			}
+		}
+		catch(IOException | RuntimeException e)
+		{
+			fail();
+		}
+	}
+
+	private boolean write(ByteArrayOutputStream bytes) throws IOException
+	{
+		if(bytes.size() == 0)
+		{
+			return false;
+		}
+
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+
+		while(buffer.hasRemaining())
+		{
+			channel.write(buffer);
+		}
+
+		bytes.reset();
+		return true;
+	}
+
+	// DESCRIPTION : Stops journaling after an I/O error (the edits go on, they just can't be recovered) :
+	private void fail()
+	{
+		isFailed = true;
+		pending.clear();
+	}
+
+	private static void appendRecord(ByteArrayOutputStream bytes, List<UndoManager.Edit> edits) throws IOException
+	{
+		// Declare variables :
+		ByteArrayOutputStream record 	= new ByteArrayOutputStream();
+		DataOutputStream out 			= new DataOutputStream(record);
+		CRC32 crc 						= new CRC32();
+
+		out.writeInt(edits.size());
+
+		for(UndoManager.Edit edit : edits)
+		{
+			out.writeInt(edit.offset);
+			out.writeInt(edit.removedTxt.length());
+			out.writeInt(edit.insertedTxt.length());
+			out.writeChars(edit.insertedTxt);
+		}
+
+		out.flush();
+		crc.update(record.toByteArray());
+
+		DataOutputStream header = new DataOutputStream(bytes);
+		header.writeInt(record.size());
+		record.writeTo(bytes);
+		header.writeInt((int)crc.getValue());
+	}
+
+	private static long writeHeader(FileChannel channel, File baseFile, Charset charset) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out 		= new DataOutputStream(bytes);
+
+		out.writeInt(MAGIC);
+		out.writeLong((baseFile == null) ? 0 : baseFile.length());
+		out.writeLong((baseFile == null) ? 0 : baseFile.lastModified());
+		out.writeUTF((charset == null) ? "" : charset.name());
+		out.flush();
+
+		channel.position(0);
+		channel.write(ByteBuffer.wrap(bytes.toByteArray()));
+
+		return bytes.size();
+	}
+
+	private static void moveReplacing(Path source, Path target) throws IOException
+	{
+		try
+		{
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(AtomicMoveNotSupportedException e)
+		{
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	// DESCRIPTION : A step run by the writer thread between two edits :
+	private interface JournalCommand
+	{
+		void run() throws IOException;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// RECOVERY :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Returns the edits left in the journal of a file, or null if there are none that apply to the file
+	//               as it is on disk (no journal, no edits, or the file was changed since the journal was started) :
+	public static Recovery findRecovery(File file)
+	{
+		Path journal = pathFor(file);
+
+		if(!Files.isRegularFile(journal))
+		{
+			return null;
+		}
+
+		try(FileChannel channel = FileChannel.open(journal, StandardOpenOption.READ))
+		{
+			Header header = readHeader(channel);
+
+			if(channel.size() <= header.length)
+			{
+				return null;
+			}
+
+			if(file != null && (header.baseLength != file.length() || header.baseLastModified != file.lastModified()))
+			{
+				return null;
+			}
+
+			return new Recovery(journal, header);
+		}
+		catch(IOException e)
+		{
+			return null;
+		}
+	}
+
+	private static Header readHeader(FileChannel channel) throws IOException
+	{
+		DataInputStream in = new DataInputStream(Channels.newInputStream(channel.position(0)));
+
+		if(in.readInt() != MAGIC)
+		{
+			throw new IOException("Not an edit journal");
+		}
+
+		long baseLength 		= in.readLong();
+		long baseLastModified 	= in.readLong();
+		String charsetName 		= in.readUTF();
+
+		// (4 + 8 + 8 bytes, then the UTF string with its 2 bytes length)
+		return new Header(baseLength, baseLastModified, charsetName, 4 + 8 + 8 + 2 + utfLength(charsetName));
+	}
+
+	private static int utfLength(String text)
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try
+		{
+			new DataOutputStream(bytes).writeUTF(text);
+		}
+		catch(IOException e)
+		{
+			throw new IllegalStateException(e);
+		}
+
+		return bytes.size() - 2;
+	}
+
+	private static final class Header
+	{
+		// CLASS FIELDS :
+		final long baseLength;
+		final long baseLastModified;
+		final String charsetName;
+		final long length;
+
+		// CONSTRUCTOR :
+		Header(long baseLength, long baseLastModified, String charsetName, long length)
+		{
+			this.baseLength 		= baseLength;
+			this.baseLastModified 	= baseLastModified;
+			this.charsetName 		= charsetName;
+			this.length 			= length;
+		}
+	}
+
+	// DESCRIPTION : Edits found in a journal, to replay onto the text of the saved file :
+	public static final class Recovery
+	{
+		// CLASS FIELDS :
+		private Path path 					= null;
+		private Header header 				= null;
+		private volatile long validLength 	= -1;
+
+		// CONSTRUCTOR :
+		Recovery(Path path, Header header)
+		{
+			this.path 	= path;
+			this.header = header;
+		}
+
+		// DESCRIPTION : Returns the encoding the file was read with when the journal was started (null for a new document) :
+		public Charset getCharset()
+		{
+			return header.charsetName.isEmpty() ? null : Charset.forName(header.charsetName);
+		}
+
+		// DESCRIPTION : Returns the length of the journal up to the last record replayed (to append after it) :
+		public long getValidLength()
+		{
+			return validLength;
+		}
+
+		// DESCRIPTION : Replays the edits onto the saved text and returns the recovered text (meant to run on a
+		//               background thread). The replay stops at the first record cut short or damaged by the crash.
+		public String replay(String savedTxt) throws IOException
+		{
+			// Declare variables :
+			PieceTable document 	= new PieceTable(savedTxt);
+			long position 			= header.length;
+			byte[] record 			= null;
+
+			try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+			{
+				DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel.position(position))));
+
+				while((record = readRecord(in, channel.size() - position)) != null)
+				{
+					try
+					{
+						document.applyEdits(parseRecord(record));
+					}
+					catch(IOException | IllegalArgumentException | IndexOutOfBoundsException e)
+					{
+						break;
+					}
+
+					position += 4 + record.length + 4;
+				}
+			}
+
+			validLength = position;
+
+			return document.toString();
+		}
+
+		// DESCRIPTION : Returns the edits of the next record, or null at the end of the journal or at a damaged record :
+		private static byte[] readRecord(DataInputStream in, long remaining) throws IOException
+		{
+			try
+			{
+				// Declare variables :
+				int length 	= in.readInt();
+				CRC32 crc 	= new CRC32();
+
+				if(length < 4 || length > remaining - 8)
+				{
+					return null;
+				}
+
+				byte[] record = new byte[length];
+				in.readFully(record);
+				crc.update(record);
+
+				return (in.readInt() == (int)crc.getValue()) ? record : null;
+			}
+			catch(EOFException e)
+			{
+				return null;
+			}
+		}
+
+		private static List<TextEdit> parseRecord(byte[] record) throws IOException
+		{
+			DataInputStream in 			= new DataInputStream(new ByteArrayInputStream(record));
+			int count 					= in.readInt();
+			ArrayList<TextEdit> edits 	= new ArrayList<>();
+
+			for(int i = 0; i < count; i++)
+			{
+				int offset 		= in.readInt();
+				int removed 	= in.readInt();
+				char[] inserted = new char[in.readInt()];
+
+				for(int k = 0; k < inserted.length; k++)
+				{
+					inserted[k] = in.readChar();
+				}
+
+				edits.add(new TextEdit(offset, offset + removed, new String(inserted)));
+			}
+
+			return edits;
+		}
+	}
+}
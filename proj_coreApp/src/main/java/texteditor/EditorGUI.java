@@ -3,42 +3,67 @@ package texteditor;
 import java.io.*;
 import java.lang.reflect.*;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
-import org.python.util.PythonInterpreter;
-
+import javafx.animation.PauseTransition;
 import javafx.application.Application;
 import javafx.application.Platform;
-import javafx.beans.value.ChangeListener;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.concurrent.Task;
+import javafx.geometry.Insets;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.FlowPane;
+import javafx.scene.layout.HBox;
 import javafx.stage.FileChooser;
 import javafx.stage.FileChooser.ExtensionFilter;
 import javafx.stage.Stage;
 import javafx.stage.Window;
+import javafx.util.Duration;
 
 public class EditorGUI extends Application
 {
 	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // CLASS FIELDS :
 	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~    
+	private static final long SAVE_TIMEOUT_MILLIS						= 30_000;
+	private static final long AUTOSAVE_IDLE_MILLIS						= 3_000;
 	private ObservableList<String> listViewList 						= FXCollections.observableArrayList();
-    private TextArea textArea 											= new TextArea();
+    private EditorTextArea textArea 									= new EditorTextArea();
+    private DocumentView documentView									= new DocumentView(textArea);
     private ToolBar toolBar 											= new ToolBar();
-    private ArrayList<TxtChangedEvent_Interface> txtChangedEventList	= new ArrayList<>();
-    private ArrayList<KeyPressEvent_Interface> keyPressEventList		= new ArrayList<>();
+    private ArrayList<TxtChangedEvent> txtChangedEventList				= new ArrayList<>();
+    private ArrayList<DocChangedObserver> docChangedObserverList		= new ArrayList<>();
     private ResourceBundle bundle 										= null;
     private Locale locale		 										= null;    
     private ArrayList<keyMapCombn> keyCombsList							= null;
+    private Label statusLabel											= new Label();
+    private ProgressBar progressBar										= new ProgressBar();
+    private Button cancelTaskBtn										= new Button();
+    private Task<?> statusTask											= null;
+    private IOService ioService											= new IOService();
+    private String lineSeparator										= "\n";
+    private Charset documentCharset										= null;
+    private EditJournal journal											= null;
+    private File documentFile											= null;
+    private DirtyRegionTracker dirtyRegions								= new DirtyRegionTracker(textArea);
+    private PauseTransition autosaveTimer								= new PauseTransition(Duration.millis(AUTOSAVE_IDLE_MILLIS));
+    private long autosavedVersion										= 0;
+    private BorderPane mainBox											= new BorderPane();
+    private LargeFileView largeFileView									= null;
+    private TriggerMatcher triggerMatcher								= new TriggerMatcher(new ArrayList<>());
+    private KeyDispatchTable keyDispatchTable							= new KeyDispatchTable();
+    private ScriptInterpreterPool scriptPool							= new ScriptInterpreterPool(new ScriptCodeCache(
+    																		Paths.get(System.getProperty("user.home"), ".texteditor", "script-cache")));
     
 	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // APPLICATION SETUP :
@@ -73,6 +98,9 @@ public class EditorGUI extends Application
         this.bundle = bundle;
         this.locale = locale;
         
+        // Bootstrap the script interpreters in the background (so loading a script does not freeze the UI) :
+        scriptPool.warmUp();
+        
         
         
     	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~ 
@@ -91,12 +119,21 @@ public class EditorGUI extends Application
         // Subtle user experience tweaks :
         toolBar.setFocusTraversable(false);
         toolBar.getItems().forEach(btn -> btn.setFocusTraversable(false));
-        textArea.setStyle("-fx-font-family: 'monospace'");
+        documentView.setStyle("-fx-font-family: 'monospace'");
+        
+        // Setup status bar (shows the progress of file loading/saving) :
+        HBox statusBar = new HBox(8, progressBar, cancelTaskBtn, statusLabel);
+        statusBar.setPadding(new Insets(2, 8, 2, 8));
+        statusLabel.setText(bundle.getString("Status_Ready"));
+        progressBar.setVisible(false);
+        cancelTaskBtn.setText(bundle.getString("Status_CancelBtn"));
+        cancelTaskBtn.setFocusTraversable(false);
+        cancelTaskBtn.setVisible(false);
         
         // Add the main parts of the UI to the window :
-        BorderPane mainBox = new BorderPane();
         mainBox.setTop(toolBar);
-        mainBox.setCenter(textArea);
+        mainBox.setCenter(documentView);
+        mainBox.setBottom(statusBar);
         Scene scene = new Scene(mainBox);        
         
         // Button event handlers :
@@ -119,6 +156,12 @@ public class EditorGUI extends Application
             // Parse keymap file and generate a list of key combination objects :
             keysParser parser 	= new keysParser(new java.io.StringReader(keymapFile));
             this.keyCombsList 	= parser.Input(textArea);
+            
+            // Bind each key combination in the dispatch table :
+            for(keyMapCombn keyCombn : keyCombsList)
+            {
+            	keyCombn.addTo(keyDispatchTable);
+            }
 	    }
 	    catch(ParseException e)
 	    {
@@ -144,31 +187,34 @@ public class EditorGUI extends Application
         // STEP 4 : Add event handlers for text changes
     	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
         
-        // Monitor TextArea text change & caret positioning :
-        textArea.textProperty().addListener((ChangeListener<String>) (object, oldValue, newValue) -> 
-        { 
-			int caretIdx = textArea.getCaretPosition() + 1;
-			
-			// (SCRIPT EVENT HANDLER) Notify all observers of text changes :
-		    for(TxtChangedEvent_Interface txtChangeEvent : txtChangedEventList)
-		    {
-		    	String detectTxt					= txtChangeEvent.getTextToDetect();
-		    	TxtChangedCallbk_Interface cbEvent	= txtChangeEvent.getCallbkEvent();
-		    	
-		    	if( 	(caretIdx - detectTxt.length()) >= 0 
-		    		&& 	(caretIdx - detectTxt.length()  < caretIdx) 
-		    		&& 	(caretIdx <= textArea.getText().length()) )
-		    	{	
-		    		String typedStr = textArea.getText().substring(caretIdx-detectTxt.length(), caretIdx);		    		
-		    		if(typedStr.equals(detectTxt))
-		    		{
-		    			cbEvent.notifyTxtChangeHappened(txtChangeEvent);
-		    		}			    		
-		    	}
-		    }
-		    
+        // Monitor document edits (only the inserted text is checked for triggers) :
+        textArea.addDocumentListener(new DocumentListener() 
+        {
+			@Override
+			public void textReplaced(int offset, String removedTxt, String insertedTxt) 
+			{
+				notifyDocChanged(offset, removedTxt, insertedTxt, false);
+				autosaveTimer.playFromStart();
+				
+				// (a batch is reported as one span which includes untouched text, so it can't be checked for triggers)
+				if(!textArea.isApplyingBatch())
+				{
+					detectTextTriggers(offset, insertedTxt.length());
+				}
+			}
+
+			@Override
+			public void documentReset() 
+			{
+				// (a whole new text is not "typed", so no text triggers)
+				notifyDocChanged(0, "", "", true);
+				autosaveTimer.playFromStart();
+			}
 		});
         
+        // Write a recovery copy once the user stops editing for a while :
+        autosaveTimer.setOnFinished(event -> autosave());
+        
         
         // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~ 
         // STEP 5 : Add event handlers for key presses
@@ -183,33 +229,89 @@ public class EditorGUI extends Application
 		    boolean shift 	= keyEvent.isShiftDown();
 		    boolean alt 	= keyEvent.isAltDown();		    
 		    
-		    // (KEYMAP EVENT HANDLER) Notify all observers of key presses :
-		    if(keyCombsList != null)
-		    {
-		    	for(keyMapCombn keyCombn : keyCombsList)
-			    {
-			    	keyCombn.runKeyCombination(key, ctrl, shift, alt);
-			    }
-		    }
-		        		
-		    
-		    // (PLUGIN EVENT HANDLER) Notify all observers of key presses :
-    		for(KeyPressEvent_Interface event : keyPressEventList)
-		    {
-    			String cbKey 						= event.getKey();
-    			KeyPressCallbk_Interface cbEvent	= event.getCallbkEvent();
-    			
-    			if(key.getName().equals(cbKey))
-		    	{
-    				cbEvent.notifyKeyPressHappened(event);
-		    	}    			
-		    }		    
+		    // (KEYMAP + PLUGIN EVENT HANDLERS) Notify the observers bound to this key combination :
+		    keyDispatchTable.dispatch(key, ctrl, shift, alt);
 		    
 		});        
         
         stage.setScene(scene);
         stage.sizeToScene();
         stage.show();
+        documentView.requestFocus();
+        
+        // Offer to recover the edits of a new document the editor didn't get to save :
+        recoverOrStartJournal(null, null, "");
+    }
+    
+    
+    @Override
+    public void stop()
+    {
+    	// Stop reading files, but let a save in progress finish writing before the JVM exits :
+    	autosaveTimer.stop();
+    	ioService.shutdown(SAVE_TIMEOUT_MILLIS);
+    	closeJournal();
+    	
+    	// (a recovery copy is only kept for unsaved edits)
+    	if(!dirtyRegions.isDirty())
+    	{
+    		autosavePathFor(documentFile).toFile().delete();
+    	}
+    	textArea.getHistory().close();
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // TEXT CHANGE TRIGGERS :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : Notifies the observers of every trigger ending in the text just inserted at offset. The automaton
+    //               is fed the inserted chars plus just enough chars before them to complete the longest trigger.
+    private void detectTextTriggers(int offset, int insertedLen)
+    {
+    	// Declare variables :
+    	PieceTable document 			= textArea.getDocument();
+    	TriggerMatcher matcher 			= triggerMatcher;
+    	int contextStart 				= Math.max(0, offset - Math.max(matcher.getMaxLength() - 1, 0));
+    	Map<Integer, Integer> matched 	= null;
+    	
+    	if(insertedLen == 0 || matcher.isEmpty())
+    	{
+    		return;
+    	}
+    	
+    	matched = matcher.findMatches(document, contextStart, offset + insertedLen, offset);
+    	
+    	// (SCRIPT EVENT HANDLER) Notify the observers of the matched triggers (through their plugin's executor) :
+    	for(Map.Entry<Integer, Integer> match : matched.entrySet())
+    	{
+    		TxtChangedEvent txtChangeEvent = txtChangedEventList.get(match.getKey()).matchedAt(match.getValue());
+    		txtChangeEvent.executor.execute(() -> txtChangeEvent.callback.notifyTxtChangeHappened(txtChangeEvent));
+    	}
+    }
+    
+    // DESCRIPTION : Notifies the observers of document changes of an edit :
+    private void notifyDocChanged(int offset, String removedTxt, String insertedTxt, boolean isReset)
+    {
+    	for(DocChangedObserver observer : docChangedObserverList)
+    	{
+    		DocChangedEvent event = new DocChangedEvent(observer.callback, offset, removedTxt, insertedTxt, isReset, dirtyRegions.getVersion());
+    		
+    		observer.executor.execute(() -> observer.callback.notifyDocChangeHappened(event));
+    	}
+    }
+    
+    // DESCRIPTION : Rebuilds the trigger automaton from the registered text change events :
+    private void rebuildTextTriggers()
+    {
+    	ArrayList<String> triggers = new ArrayList<>();
+    	
+    	for(TxtChangedEvent_Interface txtChangeEvent : txtChangedEventList)
+    	{
+    		triggers.add(txtChangeEvent.getTextToDetect());
+    	}
+    	
+    	triggerMatcher = new TriggerMatcher(triggers);
     }
     
     
@@ -220,11 +322,7 @@ public class EditorGUI extends Application
     {
     	// Declare variables :
     	FileChooser fileDialog 		= new FileChooser();
-    	String encoding 			= null;
-    	CharsetDecoder decoder 		= null;
-    	InputStreamReader inStream	= null;
     	File file 					= null;
-    	String line					= null;
     	
     	fileDialog.setTitle(bundle.getString("LoadFile_Window_Title"));
         
@@ -233,46 +331,294 @@ public class EditorGUI extends Application
         
         if(file != null)
         {
-        	// Prompt user for the encoding to use :
-            encoding = getEncoding();            
-           	
+        	File chosenFile = file;
+        	
+        	// Guess the encoding from the start of the file on a background thread :
+        	Task<EncodingDetector.Detection> detector = new Task<>()
+        	{
+        		@Override
+        		protected EncodingDetector.Detection call() throws IOException
+        		{
+        			return EncodingDetector.detect(chosenFile);
+        		}
+        	};
+        	
+        	// Only ask the user for the encoding when the guess is uncertain :
+        	detector.setOnSucceeded(event -> 
+        	{
+        		EncodingDetector.Detection detection 	= detector.getValue();
+        		String encoding 						= detection.isConfident ? detection.charset.name() : getEncoding(detection.charset.name());
+        		
+        		if(encoding != null)
+        		{
+        			openFile(chosenFile, Charset.forName(encoding));
+        		}
+        	});
+        	
+        	detector.setOnFailed(event -> showLoadError(detector.getException()));
+        	
+        	ioService.submit(detector);
+        }
+    }
+    
+    // DESCRIPTION : Loads a file decoded with the given charset (or shows it read-only if it is too large) :
+    private void openFile(File file, Charset charset)
+    {
+		if(isLargeFile(file))
+		{
+			// Too big for the heap, show it read-only straight from the mapped file :
+			openLargeFile(file, charset);
+			return;
+		}
+		
+		startLoader(file, charset, new DocumentLoader(file, charset.newDecoder()));
+    }
+    
+    // DESCRIPTION : Reads and decodes the file on a background thread :
+    private void startLoader(File file, Charset charset, DocumentLoader loader)
+    {
+		// Publish the whole text to the editor once, when loading is done :
+		loader.setOnSucceeded(event -> 
+		{
+			closeLargeFile();
+			closeJournal();
+			
+			// (the recovery copy of the previous document is kept if it had unsaved edits)
+			if(!dirtyRegions.isDirty())
+			{
+				discardAutosave();
+			}
+			
+			textArea.loadDocument(loader.getValue());
+			dirtyRegions.clear();
+			autosavedVersion = dirtyRegions.getVersion();
+			lineSeparator 	= loader.getLineSeparator();
+			documentCharset = charset;
+			documentFile 	= file;
+			textArea.setEditable(true);
+			hideTaskProgress();
+			
+			if(loader.getMalformedCount() > 0)
+			{
+				showMalformedWarning(file, charset, loader);
+			}
+			
+			recoverOrStartJournal(file, charset, loader.getValue());
+		});
+		
+		loader.setOnFailed(event -> 
+		{
+			textArea.setEditable(true);
+			hideTaskProgress();
+			showLoadError(loader.getException());
+		});
+		
+		loader.setOnCancelled(event -> 
+		{
+			textArea.setEditable(true);
+			showTaskCancelled(loader);
+		});
+		
+		// Block edits until the new text is in place :
+		textArea.setEditable(false);
+		showTaskProgress(loader, String.format(bundle.getString("Status_Loading"), file.getName()));
+		
+		ioService.submit(loader);
+    }
+    
+    // DESCRIPTION : Tells the user where invalid byte sequences were replaced, and offers to decode the file again
+    //               with another encoding. Only the part from the first invalid sequence on is decoded again, the
+    //               text before it is kept as it is.
+    private void showMalformedWarning(File file, Charset charset, DocumentLoader loader)
+    {
+    	// Declare variables :
+    	List<Long> offsets 			= loader.getMalformedOffsets();
+    	StringJoiner shownOffsets 	= new StringJoiner(", ");
+    	ButtonType reopenBtn 		= new ButtonType(bundle.getString("LoadFile_ReopenBtn"));
+    	String encoding 			= null;
+    	
+    	offsets.stream().limit(10).forEach(offset -> shownOffsets.add(Long.toString(offset)));
+    	
+    	if(offsets.size() > 10)
+    	{
+    		shownOffsets.add("...");
+    	}
+    	
+    	Alert alert = new Alert(Alert.AlertType.WARNING,
+    							String.format(bundle.getString("LoadFile_MalformedWarn"), loader.getMalformedCount(), shownOffsets),
+    							reopenBtn, ButtonType.CLOSE);
+    	
+    	if(alert.showAndWait().orElse(ButtonType.CLOSE) == reopenBtn && (encoding = getEncoding(charset.name())) != null)
+    	{
+    		Charset newCharset 	= Charset.forName(encoding);
+    		String prefix 		= loader.getValue().substring(0, loader.getFirstMalformedChar());
+    		
+    		startLoader(file, newCharset, new DocumentLoader(file, newCharset.newDecoder(), prefix, offsets.get(0), loader.getLineSeparator()));
+    	}
+    }
+    
+    private void showLoadError(Throwable e)
+    {
+		if(e instanceof NoSuchFileException || e instanceof FileNotFoundException)
+		{
+			new Alert(	Alert.AlertType.ERROR,
+						String.format(bundle.getString("LoadFile_NotFoundErr"), e.getMessage()),
+						ButtonType.CLOSE).showAndWait();
+		}
+		else
+		{
+			new Alert(	Alert.AlertType.ERROR,
+						String.format(bundle.getString("LoadFile_ReadFileErr"), e.getMessage()),
+						ButtonType.CLOSE).showAndWait();
+		}
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // EDIT JOURNAL :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : If the journal of the document just opened holds edits that were never saved (the editor died),
+    //               offers to replay them onto the saved text, then journals the edits from there on. file is null
+    //               for a new document.
+    private void recoverOrStartJournal(File file, Charset charset, String savedTxt)
+    {
+    	// Declare variables :
+    	EditJournal.Recovery recovery 	= EditJournal.findRecovery(file);
+    	String name 					= (file != null) ? file.getName() : bundle.getString("Recovery_Untitled");
+    	
+    	// (edits made on the text decoded with another encoding can't be replayed)
+    	if(recovery == null || !Objects.equals(recovery.getCharset(), charset))
+    	{
+    		startJournal(file, charset, -1);
+    		return;
+    	}
+    	
+    	Alert alert = new Alert(Alert.AlertType.CONFIRMATION, String.format(bundle.getString("Recovery_Prompt"), name), ButtonType.YES, ButtonType.NO);
+    	
+    	if(alert.showAndWait().orElse(ButtonType.NO) != ButtonType.YES)
+    	{
+    		startJournal(file, charset, -1);
+    		return;
+    	}
+    	
+    	// Replay the edits on a background thread (the text is only published once) :
+    	Task<String> replayTask = new Task<>()
+    	{
+    		@Override
+    		protected String call() throws IOException
+    		{
+    			return recovery.replay(savedTxt);
+    		}
+    	};
+    	
+    	replayTask.setOnSucceeded(event -> 
+    	{
+    		textArea.loadDocument(replayTask.getValue());
+    		textArea.setEditable(true);
+    		hideTaskProgress();
+    		startJournal(file, charset, recovery.getValidLength());
+    	});
+    	
+    	replayTask.setOnFailed(event -> 
+    	{
+    		textArea.setEditable(true);
+    		hideTaskProgress();
+    		startJournal(file, charset, -1);
+    		
+    		new Alert(	Alert.AlertType.ERROR,
+						String.format(bundle.getString("Recovery_ReadErr"), replayTask.getException().getMessage()),
+						ButtonType.CLOSE).showAndWait();
+    	});
+    	
+    	replayTask.setOnCancelled(event -> 
+    	{
+    		textArea.setEditable(true);
+    		startJournal(file, charset, -1);
+    		showTaskCancelled(replayTask);
+    	});
+    	
+    	textArea.setEditable(false);
+    	showTaskProgress(replayTask, String.format(bundle.getString("Status_Recovering"), name));
+    	
+    	ioService.submit(replayTask);
+    }
+    
+    private void startJournal(File file, Charset charset, long keepLength)
+    {
+    	journal = new EditJournal(EditJournal.pathFor(file), file, charset, keepLength);
+    	textArea.setJournal(journal);
+    }
+    
+    // DESCRIPTION : Writes the pending edits to the journal and closes it (it is kept if the document had unsaved edits) :
+    private void closeJournal()
+    {
+    	if(journal != null)
+    	{
+    		textArea.setJournal(null);
+    		journal.close();
+    		journal = null;
+    	}
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // LARGE FILE VIEWER :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : A file is "large" when its decoded text (plus the line index, history and saves around it) would not fit comfortably in the heap :
+    private boolean isLargeFile(File file)
+    {
+    	return (file.length() > (Runtime.getRuntime().maxMemory() / 8));
+    }
+    
+    // DESCRIPTION : Memory-maps the file and shows it in the read-only viewer instead of the editor :
+    private void openLargeFile(File file, Charset charset)
+    {
+    	try 
+    	{
+    		MappedTextFile mappedFile 	= new MappedTextFile(file, charset);
+    		LargeFileView view 			= new LargeFileView(mappedFile);
+    		Task<Void> indexTask 		= view.createIndexTask();
+    		
+    		closeLargeFile();
+    		largeFileView = view;
+    		mainBox.setCenter(view);
+    		
+    		// Index the lines in the background (rows appear as they are found) :
+    		indexTask.setOnSucceeded(event -> hideTaskProgress(String.format(bundle.getString("Status_ReadOnly"), file.getName())));
+    		indexTask.setOnFailed(event -> hideTaskProgress());
+    		indexTask.setOnCancelled(event -> showTaskCancelled(indexTask));
+    		showTaskProgress(indexTask, String.format(bundle.getString("Status_Indexing"), file.getName()));
+    		
+    		ioService.submit(indexTask);
+		} 
+    	catch (IOException e) 
+    	{
+    		new Alert(	Alert.AlertType.ERROR,
+						String.format(bundle.getString("LoadFile_ReadFileErr"), e.getMessage()),
+						ButtonType.CLOSE).showAndWait();
+		}
+    }
+    
+    // DESCRIPTION : Closes the read-only viewer (if open) and brings the editor back :
+    private void closeLargeFile()
+    {
+    	if(largeFileView != null)
+    	{
+    		mainBox.setCenter(documentView);
+    		
     		try 
-    		{    			
-    			if(encoding != null)
-	            {    				
-    				decoder 	= Charset.forName(encoding).newDecoder();    
-    				inStream	= new InputStreamReader (new FileInputStream (file.getPath()),	decoder);
-				
-    				// Clear editor :
-    				textArea.clear();
-    				
-    				try(BufferedReader buffRead = new BufferedReader(inStream) )
-    		        {    		            
-    		            while((line = buffRead.readLine()) != null)
-    		            {
-    		            	textArea.appendText(line + "\n");
-    		            }
-    		            
-    		            // Flush buffer :
-    		            buffRead.close();
-    		        }
-	            }
-				 
-			} 
-    		catch (FileNotFoundException e) 
     		{
-    			new Alert(	Alert.AlertType.ERROR,
-							String.format(bundle.getString("LoadFile_NotFoundErr"), e.getMessage()),
-							ButtonType.CLOSE).showAndWait();
+				largeFileView.close();
 			} 
     		catch (IOException e) 
     		{
-    			new Alert(	Alert.AlertType.ERROR,
-    						String.format(bundle.getString("LoadFile_ReadFileErr"), e.getMessage()),
-    						ButtonType.CLOSE).showAndWait();
-			}           
-           
-        }
+				// Nothing to do, the file was only open for reading...
+			}
+    		
+    		largeFileView = null;
+    	}
     }
     
     
@@ -286,48 +632,95 @@ public class EditorGUI extends Application
     	File file 						= null;
     	String encoding 				= null;
     	CharsetEncoder encoder			= null;
-    	OutputStreamWriter outStream 	= null;
-    	Scanner scanner 				= null;
     	
     	fileDialog.setTitle(bundle.getString("SaveFile_Window_Title"));
+    	
+    	// The large file viewer is read-only :
+    	if(largeFileView != null)
+    	{
+    		new Alert(	Alert.AlertType.INFORMATION,
+						bundle.getString("SaveFile_ReadOnlyErr"),
+						ButtonType.CLOSE).showAndWait();
+    		return;
+    	}
 		
     	// Prompt user for a filename and directory to save :
     	file = fileDialog.showSaveDialog(stage);
     	
 		if(file != null)
         {
-			// Prompt user for an encoding :
-			encoding = getEncoding();
+			// Save with the encoding the file was loaded with, only ask for a new document :
+			encoding = (documentCharset != null) ? documentCharset.name() : getEncoding("UTF-8");
 			
 			if(encoding != null) 
 			{
 				// Make an encoder based on the chosen encoding :
 				encoder = Charset.forName(encoding).newEncoder(); 
 				
-				try 
+				// Encode a snapshot of the document (no copy of the text, editing can go on) on the save thread :
+				DocumentSaver saver = new DocumentSaver(textArea.getDocument().snapshot(), file, encoder, lineSeparator);
+				
+				String savedEncoding 		= encoding;
+				File savedFile 				= file;
+				EditJournal savedJournal 	= journal;
+				long savedVersion 			= dirtyRegions.getVersion();
+				
+				// Only the edits made after the snapshot are left to journal once it is saved :
+				if(savedJournal != null)
+				{
+					savedJournal.checkpoint();
+				}
+				
+				saver.setOnSucceeded(event -> 
 				{
-					outStream 	= new OutputStreamWriter(new FileOutputStream(file), encoder);
-					scanner 	= new Scanner(textArea.getText());
+					documentCharset = Charset.forName(savedEncoding);
+					hideTaskProgress();
+					dirtyRegions.markSaved(savedVersion);
+					
+					// The recovery copy is out of date once the file holds the same text :
+					if(!dirtyRegions.isDirty())
+					{
+						discardAutosave();
+					}
 					
-					PrintWriter pw = new PrintWriter(outStream);
-			        
-					// Write each line to the text file :
-		            while (scanner.hasNextLine()) 
-		            {
-		              String line = scanner.nextLine();
-		              pw.print(line + "\n");	              
-		            }
-		            
-		            // Flush scanner and printer :
-		            scanner.close();
-		            pw.close();			        					
-				} 
-				catch (FileNotFoundException e) 
+					documentFile = savedFile;
+					
+					if(savedJournal != null && savedJournal == journal)
+					{
+						savedJournal.saved(savedFile, documentCharset);
+					}
+				});
+				
+				saver.setOnFailed(event -> 
 				{
-					new Alert(	Alert.AlertType.ERROR,
-	    						String.format(bundle.getString("SaveFile_NotFoundErr"), e.getMessage()),
-	    						ButtonType.CLOSE).showAndWait();
-				} 
+					Throwable e = saver.getException();
+					
+					hideTaskProgress();
+					abandonCheckpoint(savedJournal);
+					
+					if(e instanceof NoSuchFileException || e instanceof FileNotFoundException)
+					{
+						new Alert(	Alert.AlertType.ERROR,
+		    						String.format(bundle.getString("SaveFile_NotFoundErr"), e.getMessage()),
+		    						ButtonType.CLOSE).showAndWait();
+					}
+					else
+					{
+						new Alert(	Alert.AlertType.ERROR,
+		    						String.format(bundle.getString("SaveFile_WriteErr"), e.getMessage()),
+		    						ButtonType.CLOSE).showAndWait();
+					}
+				});
+				
+				saver.setOnCancelled(event -> 
+				{
+					showTaskCancelled(saver);
+					abandonCheckpoint(savedJournal);
+				});
+				
+				showTaskProgress(saver, String.format(bundle.getString("Status_Saving"), file.getName()));
+				
+				ioService.submitSave(saver);
 			}			
 			  
         }
@@ -335,10 +728,130 @@ public class EditorGUI extends Application
     }
     
     
+    private void abandonCheckpoint(EditJournal savedJournal)
+    {
+    	if(savedJournal != null && savedJournal == journal)
+    	{
+    		savedJournal.saveAbandoned();
+    	}
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // AUTOSAVE :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : Writes a recovery copy of the document if it changed since the last save and the last recovery
+    //               copy. Like a save, it encodes a snapshot of the document on the save thread (no copy of the text
+    //               on the FX thread), and it doesn't show in the status bar.
+    private void autosave()
+    {
+    	// Declare variables :
+    	long version 	= dirtyRegions.getVersion();
+    	Charset charset = (documentCharset != null) ? documentCharset : StandardCharsets.UTF_8;
+    	Path copyPath 	= autosavePathFor(documentFile);
+    	
+    	if(!dirtyRegions.isDirty() || version == autosavedVersion || largeFileView != null || !textArea.isEditable())
+    	{
+    		return;
+    	}
+    	
+    	try
+		{
+			Files.createDirectories(copyPath.getParent());
+		}
+		catch(IOException e)
+		{
+			return;
+		}
+    	
+    	DocumentSaver saver = new DocumentSaver(textArea.getDocument().snapshot(), copyPath.toFile(), charset.newEncoder(), lineSeparator);
+    	
+    	// (try again after the next edits if it fails)
+    	saver.setOnFailed(event -> 
+    	{
+    		if(autosavedVersion == version)
+    		{
+    			autosavedVersion = -1;
+    		}
+    	});
+    	
+    	autosavedVersion = version;
+    	ioService.submitSave(saver);
+    }
+    
+    // DESCRIPTION : Deletes the recovery copy of the document (once any recovery copy still being written is done) :
+    private void discardAutosave()
+    {
+    	Path copyPath = autosavePathFor(documentFile);
+    	
+    	ioService.submitSave(new Task<Void>()
+    	{
+    		@Override
+    		protected Void call() throws IOException
+    		{
+    			Files.deleteIfExists(copyPath);
+    			return null;
+    		}
+    	});
+    }
+    
+    // DESCRIPTION : Returns where the recovery copy of a file is written (a hidden file next to it) :
+    private static Path autosavePathFor(File file)
+    {
+    	if(file == null)
+    	{
+    		return Paths.get(System.getProperty("user.home"), ".texteditor", "untitled.autosave");
+    	}
+    	
+    	return file.toPath().toAbsolutePath().resolveSibling("." + file.getName() + ".autosave");
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // STATUS BAR :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : Shows a message and the progress of a background task in the status bar :
+    private void showTaskProgress(Task<?> task, String message)
+    {
+    	statusTask = task;
+    	statusLabel.setText(message);
+    	progressBar.progressProperty().bind(task.progressProperty());
+    	progressBar.setVisible(true);
+    	cancelTaskBtn.setOnAction(event -> task.cancel());
+    	cancelTaskBtn.setVisible(true);
+    }
+    
+    // DESCRIPTION : Resets the status bar once a background task is done :
+    private void hideTaskProgress()
+    {
+    	hideTaskProgress(bundle.getString("Status_Ready"));
+    }
+    
+    private void hideTaskProgress(String message)
+    {
+    	statusTask = null;
+    	progressBar.progressProperty().unbind();
+    	progressBar.setVisible(false);
+    	cancelTaskBtn.setVisible(false);
+    	statusLabel.setText(message);
+    }
+    
+    // DESCRIPTION : Resets the status bar once a task is cancelled (unless another task has taken it over since) :
+    private void showTaskCancelled(Task<?> task)
+    {
+    	if(statusTask == task)
+    	{
+    		hideTaskProgress(bundle.getString("Status_Cancelled"));
+    	}
+    }
+    
+    
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // ENCODING DIALOG :
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-    private String getEncoding()
+    private String getEncoding(String suggestedEncoding)
     {
     	// Display a dialogbox and retrieve the encoding name : 
     	Dialog<String> encodingDialog 	= null;
@@ -357,7 +870,12 @@ public class EditorGUI extends Application
         content.setHgap(8);
         content.getChildren().setAll(new Label(bundle.getString("Encoding_label")), encodingComboBox);            
         encodingComboBox.getItems().setAll("UTF-8", "UTF-16", "UTF-32");
-        encodingComboBox.setValue("UTF-8");
+        encodingComboBox.setValue(suggestedEncoding);
+        
+        if(!encodingComboBox.getItems().contains(suggestedEncoding))
+        {
+        	encodingComboBox.getItems().add(suggestedEncoding);
+        }
         
     	// Prompt user for the encoding :
     	encoding = encodingDialog.showAndWait().orElse(null);
@@ -369,14 +887,14 @@ public class EditorGUI extends Application
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // SEARCH TEXT DIALOG :
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
-    private String showFindDialog()
+    private String showFindDialog(String headerText)
     {
         // Declare variables :
     	String inputStr = null;
         var dialog 		= new TextInputDialog();
         
         dialog.setTitle(bundle.getString("FindDialog_Window_Title"));
-        dialog.setHeaderText(bundle.getString("FindDialog_HeaderTxt"));        
+        dialog.setHeaderText(headerText);        
         
         inputStr = dialog.showAndWait().orElse(null);
         
@@ -458,35 +976,30 @@ public class EditorGUI extends Application
 
     private void runScript(File pythonFile)
     {
-    	Platform.runLater(() -> 
+		// Variable declarations :				
+		String pythonScript = null;
+		
+		try 
 		{
-			// Variable declarations :				
-			String pythonScript = null;
+			pythonScript = new String(Files.readAllBytes(pythonFile.toPath()), StandardCharsets.UTF_8);
 			
-			try 
-			{
-				pythonScript = new String(Files.readAllBytes(pythonFile.toPath()), StandardCharsets.UTF_8);
-				
-				// Initialise the interpreter
-				PythonInterpreter interpreter = new PythonInterpreter();
-				
-				// Instantiate new API object :
-				txtEditorAPI scriptAPI = new txtEditorAPI();
-				
-				// Bind the API to the script environment :
-				interpreter.set("api", scriptAPI);
-							
-				// Run the script :
-				interpreter.exec(pythonScript);
-			} 
-			catch (IOException e) 
+			// Instantiate new API object :
+			txtEditorAPI scriptAPI = new txtEditorAPI();
+			
+			// Run the script on a pooled interpreter, off the FX thread (the API marshals its changes back) :
+			scriptPool.exec(pythonScript, pythonFile.getName(), Map.of("api", scriptAPI), e -> Platform.runLater(() -> 
 			{
 				new Alert(	Alert.AlertType.ERROR,
-							String.format(bundle.getString("runScript_ReadScriptErr"), e.getMessage()),
+							String.format(bundle.getString("runScript_ExecScriptErr"), e.toString()),
 							ButtonType.CLOSE).showAndWait();
-			}
-				
-		});
+			}));
+		} 
+		catch (IOException e) 
+		{
+			new Alert(	Alert.AlertType.ERROR,
+						String.format(bundle.getString("runScript_ReadScriptErr"), e.getMessage()),
+						ButtonType.CLOSE).showAndWait();
+		}
 		
     }
     
@@ -611,11 +1124,86 @@ public class EditorGUI extends Application
     }
     
         
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // RESULT LIST PANEL :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : Shows a panel with a list of results on the right of the editor (replacing the previous one) :
+    private ResultList openResultList(String title, ResultSelectedCallbk_Interface callbk, PluginExecutor executor)
+    {
+    	// Declare variables :
+    	ResultList resultList 	= new ResultList(callbk, executor);
+    	Button closeBtn 		= new Button(bundle.getString("Results_CloseBtn"));
+    	HBox header 			= new HBox(8, resultList.titleLabel, closeBtn);
+    	BorderPane panel 		= new BorderPane(resultList.listView);
+    	
+    	resultList.titleLabel.setText(title);
+    	header.setPadding(new Insets(2, 8, 2, 8));
+    	closeBtn.setFocusTraversable(false);
+    	closeBtn.setOnAction(event -> mainBox.setRight(null));
+    	
+    	panel.setTop(header);
+    	mainBox.setRight(panel);
+    	
+    	return resultList;
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // FX THREAD HELPERS (the API can be called from script threads) :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    // DESCRIPTION : Runs a change on the FX thread (straight away if already on it) :
+    private void runOnFxThread(Runnable change)
+    {
+    	if(Platform.isFxApplicationThread())
+    	{
+    		change.run();
+    	}
+    	else
+    	{
+    		Platform.runLater(change);
+    	}
+    }
+    
+    // DESCRIPTION : Runs a query on the FX thread and waits for its result :
+    private <T> T callOnFxThread(Callable<T> query)
+    {
+    	FutureTask<T> task = new FutureTask<>(query);
+    	
+    	runOnFxThread(task);
+    	
+    	try 
+    	{
+			return task.get();
+		} 
+    	catch (InterruptedException e) 
+    	{
+    		Thread.currentThread().interrupt();
+    		throw new IllegalStateException(e);
+		}
+    	catch (ExecutionException e) 
+    	{
+    		throw new IllegalStateException(e.getCause());
+		}
+    }
+    
+    
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     // APPLICATION API :
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     private class txtEditorAPI implements API
     {
+    	// CLASS FIELDS :
+    	PluginExecutor executor = new PluginExecutor();
+    	
+    	// Deliver the callbacks of this plugin on the FX thread (true) or in order on a thread of their own (false) :
+    	@Override
+		public void setSynchronousCallbacks(boolean isSynchronous) 
+		{
+			executor.setSynchronous(isSynchronous);
+		}
+		
     	// Highlights text between the two indexes :
     	@Override    	
 		public void highlightText(int startIndex, int endIndex) 
@@ -637,7 +1225,7 @@ public class EditorGUI extends Application
 				
 				BtnPressEvent btnEvent = new BtnPressEvent(callbkEvent, buttonName);
 				
-				newBtn.setOnAction(event -> callbkEvent.notifyBtnPressHappened(btnEvent));
+				newBtn.setOnAction(event -> executor.execute(() -> callbkEvent.notifyBtnPressHappened(btnEvent)));
 				
 			});			
 		}
@@ -646,14 +1234,38 @@ public class EditorGUI extends Application
 		@Override
 		public String showDialog() 
 		{
-			return (showFindDialog());			
+			return callOnFxThread(() -> showFindDialog(bundle.getString("FindDialog_HeaderTxt")));			
+		}
+
+		// Show the text input dialog with another header (e.g. to ask for a replacement text) :
+		@Override
+		public String showDialog(String headerText) 
+		{
+			return callOnFxThread(() -> showFindDialog(headerText));			
+		}
+
+		// Show a message to the user (after the pending edits, e.g. once a batch edit it reports on is applied) :
+		@Override
+		public void showMessage(String message) 
+		{
+			Platform.runLater(() -> 
+			{
+				new Alert(Alert.AlertType.INFORMATION, message, ButtonType.CLOSE).showAndWait();
+			});
 		}
 
 		// Returns the current position of the caret :
 		@Override
 		public int getCaretPosition() 
 		{
-			return (textArea.getCaretPosition());			
+			return callOnFxThread(() -> textArea.getCaretPosition());			
+		}
+		
+		// Returns the start of the selection (the caret position if nothing is selected) :
+		@Override
+		public int getSelectionStart() 
+		{
+			return callOnFxThread(() -> textArea.getSelection().getStart());			
 		}
 		
 		// Set the position of the caret :
@@ -670,19 +1282,67 @@ public class EditorGUI extends Application
 		@Override
 		public String getText() 
 		{
-			return (textArea.getText());
+			return callOnFxThread(() -> textArea.getText());
+		}
+		
+		// Returns the text between the two indexes (only that range is copied) :
+		@Override
+		public String getText(int startIndex, int endIndex) 
+		{
+			return callOnFxThread(() -> textArea.getDocument().getText(startIndex, endIndex));
+		}
+		
+		// Returns a read-only view of the text as it is now, without copying it (later edits don't change it) :
+		@Override
+		public CharSequence getTextSnapshot() 
+		{
+			return callOnFxThread(() -> textArea.getDocument().snapshot());
+		}
+		
+		// Returns the version of the text (it changes with every edit, so a snapshot can be checked against it) :
+		@Override
+		public long getDocVersion() 
+		{
+			return callOnFxThread(() -> dirtyRegions.getVersion());
 		}
 
-		// Set the text contents of the editor textArea :
+		// Set the text contents of the editor textArea (only the part that differs is replaced, and recorded for undo) :
 		@Override
 		public void setText(String text) 
 		{
 			// REF : https://bugs.openjdk.java.net/browse/JDK-8081700
 			Platform.runLater(() -> 
 			{ 
-				textArea.setText(text);
+				textArea.replaceAllText(text);
 	        });
-		}	
+		}
+		
+		// Insert text at the offset (only the inserted text is laid out again, unlike setText) :
+		@Override
+		public void insertText(int offset, CharSequence text) 
+		{
+			replaceRange(offset, offset, text);
+		}
+		
+		// Delete the text between the two indexes :
+		@Override
+		public void deleteRange(int startIndex, int endIndex) 
+		{
+			replaceRange(startIndex, endIndex, "");
+		}
+		
+		// Replace the text between the two indexes :
+		@Override
+		public void replaceRange(int startIndex, int endIndex, CharSequence text) 
+		{
+			String newTxt = text.toString();
+			
+			// Deferred like setText, so an edit made from a change callback doesn't nest in the edit being notified :
+			Platform.runLater(() -> 
+			{
+				textArea.replaceText(startIndex, endIndex, newTxt);
+			});
+		}
     	
 		// Returns the active locale of the application : 
 		@Override
@@ -695,16 +1355,60 @@ public class EditorGUI extends Application
 		@Override
 		public void addKeyPressCallbk(String name, KeyPressCallbk_Interface eventKeyPress) 
 		{
-			KeyPressEvent cbEvent = new KeyPressEvent(eventKeyPress, name);
-			keyPressEventList.add(cbEvent);
+			KeyPressEvent cbEvent 	= new KeyPressEvent(eventKeyPress, name);
+			KeyCode code 			= KeyCode.getKeyCode(name);
+			
+			runOnFxThread(() -> 
+			{
+				// Plugin callbacks fire for the key whatever the modifiers (unknown key names never fire) :
+				if(code != null)
+				{
+					keyDispatchTable.addForAllModifiers(code, () -> executor.execute(() -> eventKeyPress.notifyKeyPressHappened(cbEvent)));
+				}
+			});
 		}
 		
 		// Add a text change Event to trigger a callback when it occurs :
 		@Override
 		public void addTextChangeCallbk(String txtDetected, TxtChangedCallbk_Interface eventTxtChange)
 		{
-			TxtChangedEvent cbEvent = new TxtChangedEvent(eventTxtChange, txtDetected);
-			txtChangedEventList.add(cbEvent);
+			TxtChangedEvent cbEvent = new TxtChangedEvent(eventTxtChange, txtDetected, executor);
+			
+			runOnFxThread(() -> 
+			{
+				txtChangedEventList.add(cbEvent);
+				rebuildTextTriggers();
+			});
+		}
+
+		// Apply all the edits recorded by the callback at once (one update of the editor, one change event) :
+		@Override
+		public void editBatch(EditBatchCallbk_Interface batchCallbk) 
+		{
+			Platform.runLater(() -> 
+			{
+				// The edits are recorded on the FX thread, so their offsets match the text they are applied to :
+				EditBuilder builder = new EditBuilder();
+				batchCallbk.buildEdits(builder);
+				
+				textArea.replaceTexts(builder.edits);
+			});
+		}
+		
+		// Add a callback notified of every edit made to the document :
+		@Override
+		public void addDocChangeCallbk(DocChangedCallbk_Interface eventDocChange)
+		{
+			DocChangedObserver observer = new DocChangedObserver(eventDocChange, executor);
+			
+			runOnFxThread(() -> docChangedObserverList.add(observer));
+		}
+
+		// Show a list of results (e.g. search matches) next to the editor, selecting one notifies the callback :
+		@Override
+		public ResultList_Interface showResultList(String title, ResultSelectedCallbk_Interface eventCallbk) 
+		{
+			return callOnFxThread(() -> openResultList(title, eventCallbk, executor));
 		}
 
 		// Add an item to the list of plugins/scripts :
@@ -712,9 +1416,133 @@ public class EditorGUI extends Application
 		public void displayInListView(String displayName) 
 		{
 	        // Add plugIn to listview :
-	        listViewList.add(displayName);			
+	        runOnFxThread(() -> listViewList.add(displayName));			
+		}
+		
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // EDIT BUILDER (BATCH OF EDITS) :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    private class EditBuilder implements EditBuilder_Interface
+    {
+    	// CLASS FIELDS :
+    	ArrayList<TextEdit> edits = new ArrayList<>();
+    	
+    	// Records an insertion at the offset :
+		@Override
+		public void insertText(int offset, CharSequence text) 
+		{
+			edits.add(new TextEdit(offset, offset, text.toString()));
+		}
+		
+		// Records the deletion of the text between the two indexes :
+		@Override
+		public void deleteRange(int startIndex, int endIndex) 
+		{
+			edits.add(new TextEdit(startIndex, endIndex, ""));
 		}
 		
+		// Records the replacement of the text between the two indexes :
+		@Override
+		public void replaceRange(int startIndex, int endIndex, CharSequence text) 
+		{
+			edits.add(new TextEdit(startIndex, endIndex, text.toString()));
+		}
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // RESULT LIST (SHOWN IN THE RESULT LIST PANEL) :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    private class ResultList implements ResultList_Interface
+    {
+    	// CLASS FIELDS :
+    	ObservableList<String> results 	= FXCollections.observableArrayList();
+    	ListView<String> listView 		= new ListView<>(results);
+    	Label titleLabel 				= new Label();
+    	
+    	// CONSTRUCTOR :
+    	public ResultList(ResultSelectedCallbk_Interface callbk, PluginExecutor executor)
+    	{
+    		// (the ListView only creates cells for the visible rows, however many results there are)
+    		listView.getSelectionModel().selectedIndexProperty().addListener((observable, oldIdx, newIdx) -> 
+    		{
+    			int index = newIdx.intValue();
+    			
+    			if(index >= 0)
+    			{
+    				ResultSelectedEvent event = new ResultSelectedEvent(callbk, index, results.get(index));
+    				
+    				executor.execute(() -> callbk.notifyResultSelected(event));
+    			}
+    		});
+    	}
+    	
+    	// Add results at the end of the list :
+		@Override
+		public void addResults(List<String> newResults) 
+		{
+			List<String> copy = new ArrayList<>(newResults);
+			
+			runOnFxThread(() -> results.addAll(copy));
+		}
+		
+		// Remove all the results :
+		@Override
+		public void clearResults() 
+		{
+			runOnFxThread(() -> results.clear());
+		}
+		
+		// Change the title shown above the list (e.g. to add the number of results once they are all found) :
+		@Override
+		public void setTitle(String title) 
+		{
+			runOnFxThread(() -> titleLabel.setText(title));
+		}
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // KEY-PRESS EVENT (RESULT SELECTED) :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    private class ResultSelectedEvent implements ResultSelectedEvent_Interface
+    {
+    	// CLASS FIELDS :
+    	ResultSelectedCallbk_Interface callback 	= null;
+    	int index									= 0;
+    	String result								= null;
+    	
+    	// CONSTRUCTOR :
+		public ResultSelectedEvent(ResultSelectedCallbk_Interface callbkEvent, int index, String result) 
+		{
+			this.callback 	= callbkEvent;
+			this.index 		= index;
+			this.result 	= result;
+		}
+		
+		// Gets the callback to trigger for this event :
+		@Override
+		public ResultSelectedCallbk_Interface getCallbkEvent() 
+		{
+			return callback;
+		}
+		
+		// Gets the position of the selected result in the list :
+		@Override
+		public int getIndex() 
+		{
+			return index;
+		}
+		
+		// Gets the text of the selected result :
+		@Override
+		public String getResult() 
+		{
+			return result;
+		}
     }
     
     
@@ -758,12 +1586,15 @@ public class EditorGUI extends Application
     	// CLASS FIELDS :
     	TxtChangedCallbk_Interface callback 	= null;
     	String txtDetected						= null;
+    	PluginExecutor executor					= null;
+    	int matchEnd							= -1;
     	
     	// CONSTRUCTOR :
-		public TxtChangedEvent(TxtChangedCallbk_Interface callbkEvent, String key) 
+		public TxtChangedEvent(TxtChangedCallbk_Interface callbkEvent, String key, PluginExecutor executor) 
 		{
 			this.callback 		= callbkEvent;
 			this.txtDetected	= key;
+			this.executor		= executor;
 		}
 		
 		// Gets the callback to trigger for this event :
@@ -779,6 +1610,110 @@ public class EditorGUI extends Application
 		{
 			return txtDetected;
 		}
+		
+		// Gets the offset just after the detected text (it may end anywhere in the inserted text, not at the caret). It is
+		// an offset in the text right after the edit : a callback run off the FX thread should check, from an editBatch,
+		// that the text is still there before replacing it.
+		@Override
+		public int getMatchEnd() 
+		{
+			return matchEnd;
+		}
+		
+		// Returns the event sent for a match of this trigger ending at the offset :
+		TxtChangedEvent matchedAt(int matchEnd)
+		{
+			TxtChangedEvent event = new TxtChangedEvent(callback, txtDetected, executor);
+			
+			event.matchEnd = matchEnd;
+			return event;
+		}
+    }
+
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // DOCUMENT CHANGE OBSERVER (CALLBACK AND THE EXECUTOR OF ITS PLUGIN) :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    private class DocChangedObserver
+    {
+    	// CLASS FIELDS :
+    	DocChangedCallbk_Interface callback 	= null;
+    	PluginExecutor executor					= null;
+    	
+    	// CONSTRUCTOR :
+    	public DocChangedObserver(DocChangedCallbk_Interface callback, PluginExecutor executor)
+    	{
+    		this.callback 	= callback;
+    		this.executor 	= executor;
+    	}
+    }
+    
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    // KEY-PRESS EVENT (DOCUMENT CHANGE) :
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    private class DocChangedEvent implements DocChangedEvent_Interface
+    {
+    	// CLASS FIELDS :
+    	DocChangedCallbk_Interface callback 	= null;
+    	int offset								= 0;
+    	String removedTxt						= null;
+    	String insertedTxt						= null;
+    	boolean isReset							= false;
+    	long docVersion							= 0;
+    	
+    	// CONSTRUCTOR :
+		public DocChangedEvent(DocChangedCallbk_Interface callbkEvent, int offset, String removedTxt, String insertedTxt, boolean isReset, long docVersion) 
+		{
+			this.callback 		= callbkEvent;
+			this.offset 		= offset;
+			this.removedTxt		= removedTxt;
+			this.insertedTxt	= insertedTxt;
+			this.isReset		= isReset;
+			this.docVersion		= docVersion;
+		}
+		
+		// Gets the callback to trigger for this event :
+		@Override
+		public DocChangedCallbk_Interface getCallbkEvent() 
+		{
+			return callback;
+		}
+		
+		// Gets the offset where the text was replaced :
+		@Override
+		public int getOffset() 
+		{
+			return offset;
+		}
+		
+		// Gets the text that was removed at the offset :
+		@Override
+		public String getRemovedText() 
+		{
+			return removedTxt;
+		}
+		
+		// Gets the text that was inserted at the offset :
+		@Override
+		public String getInsertedText() 
+		{
+			return insertedTxt;
+		}
+		
+		// True if the whole text was replaced (e.g. a file was loaded), the offsets of earlier edits no longer apply :
+		@Override
+		public boolean isDocumentReset() 
+		{
+			return isReset;
+		}
+		
+		// Gets the version of the text once this change was made (the one getDocVersion returned right after it) :
+		@Override
+		public long getDocVersion() 
+		{
+			return docVersion;
+		}
     }
 
     
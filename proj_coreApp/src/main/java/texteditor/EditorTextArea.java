@@ -0,0 +1,477 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyIntegerProperty;
+import javafx.beans.property.ReadOnlyIntegerWrapper;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.scene.control.IndexRange;
+
+// DESCRIPTION : The text being edited : a PieceTable document, its line index, the caret and the selection. It
+//               offers the editing methods of a TextArea (replaceText, insertText, replaceSelection, selectRange,
+//               positionCaret...) with the same caret behaviour, but it is not a control : the document is the
+//               only copy of the text, and the DocumentView shows it. Every edit goes through replaceText (or
+//               replaceTexts for a batch), is recorded in an UndoManager and the journal, and is passed on to the
+//               listeners, so the rest of the editor reads the text from the document.
+public class EditorTextArea
+{
+	// CLASS FIELDS :
+	private PieceTable document 					= new PieceTable("");
+	private LineIndex lineIndex						= new LineIndex("");
+	private ReadOnlyIntegerWrapper caretPosition	= new ReadOnlyIntegerWrapper(this, "caretPosition", 0);
+	private ReadOnlyIntegerWrapper anchor			= new ReadOnlyIntegerWrapper(this, "anchor", 0);
+	private BooleanProperty editable				= new SimpleBooleanProperty(this, "editable", true);
+	private boolean isReplacing						= false;
+	private boolean isApplyingBatch					= false;
+	private boolean isUndoing						= false;
+	private UndoManager history						= new UndoManager();
+	private EditJournal journal						= null;
+	private ArrayList<DocumentListener> listeners	= new ArrayList<>();
+
+	// CONSTRUCTOR :
+	public EditorTextArea()
+	{
+		// Typing somewhere else starts a new undo step :
+		caretPositionProperty().addListener(observable ->
+		{
+			if(!isReplacing)
+			{
+				history.sealStep();
+			}
+		});
+	}
+
+	// DESCRIPTION : Registers a listener notified of every edit made to the document :
+	public void addDocumentListener(DocumentListener listener)
+	{
+		listeners.add(listener);
+	}
+
+	// DESCRIPTION : Returns the document backing the editor (must only be edited through this control) :
+	public PieceTable getDocument()
+	{
+		return document;
+	}
+
+	// DESCRIPTION : Returns the index of line start offsets of the document :
+	public LineIndex getLineIndex()
+	{
+		return lineIndex;
+	}
+
+	// DESCRIPTION : Returns the undo/redo history of the document :
+	public UndoManager getHistory()
+	{
+		return history;
+	}
+
+	// DESCRIPTION : Sets the journal every edit is written to (null for none) :
+	public void setJournal(EditJournal journal)
+	{
+		this.journal = journal;
+	}
+
+	// DESCRIPTION : True while the listeners are notified of a batch of edits (see replaceTexts) :
+	public boolean isApplyingBatch()
+	{
+		return isApplyingBatch;
+	}
+
+	// DESCRIPTION : Replaces the whole text with a freshly loaded one (the String becomes the document's original buffer) :
+	public void loadDocument(String text)
+	{
+		document 	= new PieceTable(filterInput(text));
+		lineIndex 	= new LineIndex(document);
+		history.clear();
+		moveCaret(0, 0);
+
+		for(DocumentListener listener : listeners)
+		{
+			listener.documentReset();
+		}
+	}
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// TEXT :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	public int getLength()
+	{
+		return document.length();
+	}
+
+	// DESCRIPTION : Returns a copy of the whole text (prefer reading the document, or a snapshot of it) :
+	public String getText()
+	{
+		return document.toString();
+	}
+
+	public BooleanProperty editableProperty()
+	{
+		return editable;
+	}
+
+	public boolean isEditable()
+	{
+		return editable.get();
+	}
+
+	// DESCRIPTION : The view only lets the user edit the text when editable (the other edits are always applied) :
+	public void setEditable(boolean isEditable)
+	{
+		editable.set(isEditable);
+	}
+
+	public void insertText(int index, String text)
+	{
+		replaceText(index, index, text);
+	}
+
+	public void deleteText(int start, int end)
+	{
+		replaceText(start, end, "");
+	}
+
+	public void replaceSelection(String text)
+	{
+		IndexRange selection = getSelection();
+
+		replaceText(selection.getStart(), selection.getEnd(), text);
+	}
+
+	// DESCRIPTION : Replaces the text between the two indexes, the caret ends up after the new text :
+	public void replaceText(int start, int end, String text)
+	{
+		if(start > end)
+		{
+			throw new IllegalArgumentException();
+		}
+
+		if(text == null)
+		{
+			throw new NullPointerException();
+		}
+
+		if(start < 0 || end > getLength())
+		{
+			throw new IndexOutOfBoundsException();
+		}
+
+		// Drop the control chars the editor refuses (the ones a TextArea drops) :
+		String filteredTxt 	= filterInput(text);
+		String removedTxt 	= (start < end) ? document.getText(start, end) : "";
+
+		document.replace(start, end, filteredTxt);
+		lineIndex.textReplaced(start, removedTxt, filteredTxt);
+		moveCaret(start + filteredTxt.length(), start + filteredTxt.length());
+
+		if(!isUndoing)
+		{
+			history.recordEdit(start, removedTxt, filteredTxt);
+		}
+
+		if(journal != null)
+		{
+			journal.recordEdit(start, removedTxt, filteredTxt);
+		}
+
+		for(DocumentListener listener : listeners)
+		{
+			listener.textReplaced(start, removedTxt, filteredTxt);
+		}
+	}
+
+	// DESCRIPTION : Applies a batch of non-overlapping edits, whose offsets all refer to the text before the batch.
+	//               The document is rebuilt in one pass over its pieces (one undo step), and the listeners are
+	//               notified once of a single replacement spanning all the edits.
+	public void replaceTexts(List<TextEdit> edits)
+	{
+		// Declare variables :
+		ArrayList<TextEdit> sorted 	= new ArrayList<>(edits.size());
+		String lastTxt 				= null;
+		String lastFilteredTxt 		= null;
+		int spanStart 				= 0;
+		int spanEnd 				= 0;
+		int lengthDelta 			= 0;
+
+		if(edits.isEmpty())
+		{
+			return;
+		}
+
+		// Drop the chars the editor refuses (each distinct String once, the document shares the chars of
+		// a String inserted many times) :
+		for(TextEdit edit : edits)
+		{
+			if(edit.text != lastTxt)
+			{
+				lastTxt 		= edit.text;
+				lastFilteredTxt = filterInput(edit.text);
+			}
+
+			sorted.add((lastFilteredTxt == edit.text) ? edit : new TextEdit(edit.start, edit.end, lastFilteredTxt));
+			lengthDelta += lastFilteredTxt.length() - (edit.end - edit.start);
+		}
+
+		// Sort by offset, inserts before a replacement starting at the same offset (the sort is stable, so inserts
+		// at the same offset keep their order) :
+		sorted.sort(Comparator.comparingInt((TextEdit edit) -> edit.start).thenComparingInt(edit -> edit.end));
+
+		for(int i = 0; i < sorted.size(); i++)
+		{
+			TextEdit edit = sorted.get(i);
+
+			if(edit.start < 0 || edit.end > getLength() || (i > 0 && edit.start < sorted.get(i - 1).end))
+			{
+				throw new IndexOutOfBoundsException("Edit: [" + edit.start + ", " + edit.end + "), Length: " + getLength());
+			}
+		}
+
+		spanStart 	= sorted.get(0).start;
+		spanEnd 	= sorted.get(sorted.size() - 1).end;
+
+		String removedTxt 					= document.getText(spanStart, spanEnd);
+		ArrayList<UndoManager.Edit> records = (isUndoing && journal == null) ? null : new ArrayList<>(sorted.size());
+
+		// The history keeps each edit rather than the whole span (which could be most of the document) :
+		for(int i = 0; records != null && i < sorted.size(); i++)
+		{
+			TextEdit edit = sorted.get(i);
+			records.add(new UndoManager.Edit(edit.start, removedTxt.substring(edit.start - spanStart, edit.end - spanStart), edit.text));
+		}
+
+		document.applyEdits(sorted);
+
+		String insertedTxt = document.getText(spanStart, spanEnd + lengthDelta);
+
+		lineIndex.textReplaced(spanStart, removedTxt, insertedTxt);
+		moveCaret(spanEnd + lengthDelta, spanEnd + lengthDelta);
+
+		if(!isUndoing)
+		{
+			history.recordBatch(records);
+		}
+
+		if(journal != null)
+		{
+			journal.recordBatch(records);
+		}
+
+		isApplyingBatch = true;
+
+		try
+		{
+			for(DocumentListener listener : listeners)
+			{
+				listener.textReplaced(spanStart, removedTxt, insertedTxt);
+			}
+		}
+		finally
+		{
+			isApplyingBatch = false;
+		}
+	}
+
+	// DESCRIPTION : Replaces the whole text, as the smallest edit that turns the current text into the new one (the
+	//               text before and after the change is kept, so the history records only what changed) :
+	public void replaceAllText(String text)
+	{
+		// Declare variables :
+		String filteredTxt 	= filterInput(text);
+		int length 			= document.length();
+		int maxCommon 		= Math.min(length, filteredTxt.length());
+		int prefix 			= 0;
+		int suffix 			= 0;
+
+		while(prefix < maxCommon && document.charAt(prefix) == filteredTxt.charAt(prefix))
+		{
+			prefix++;
+		}
+
+		while(suffix < maxCommon - prefix && document.charAt(length - 1 - suffix) == filteredTxt.charAt(filteredTxt.length() - 1 - suffix))
+		{
+			suffix++;
+		}
+
+		// Don't split a surrogate pair between the kept and the replaced text :
+		if(prefix > 0 && Character.isHighSurrogate(document.charAt(prefix - 1)))
+		{
+			prefix--;
+		}
+
+		if(suffix > 0 && Character.isLowSurrogate(document.charAt(length - suffix)))
+		{
+			suffix--;
+		}
+
+		if(prefix != length || length != filteredTxt.length())
+		{
+			replaceText(prefix, length - suffix, filteredTxt.substring(prefix, filteredTxt.length() - suffix));
+		}
+	}
+
+	// DESCRIPTION : Reverts the last step of the history. Returns false if there was nothing to undo.
+	public boolean undoEdit()
+	{
+		// Declare variables :
+		List<UndoManager.Edit> step 	= history.undo();
+		ArrayList<TextEdit> edits 		= new ArrayList<>();
+		int delta 						= 0;
+
+		if(step == null)
+		{
+			return false;
+		}
+
+		// The step's offsets are in the text before it, shift them to the text after it :
+		for(UndoManager.Edit edit : step)
+		{
+			int start = edit.offset + delta;
+
+			edits.add(new TextEdit(start, start + edit.insertedTxt.length(), edit.removedTxt));
+			delta += edit.insertedTxt.length() - edit.removedTxt.length();
+		}
+
+		UndoManager.Edit last = step.get(step.size() - 1);
+
+		applyHistoryEdits(edits, last.offset + last.removedTxt.length());
+		return true;
+	}
+
+	// DESCRIPTION : Applies again the last step undone. Returns false if there was nothing to redo.
+	public boolean redoEdit()
+	{
+		// Declare variables :
+		List<UndoManager.Edit> step 	= history.redo();
+		ArrayList<TextEdit> edits 		= new ArrayList<>();
+		int delta 						= 0;
+		int caretPosition 				= 0;
+
+		if(step == null)
+		{
+			return false;
+		}
+
+		for(UndoManager.Edit edit : step)
+		{
+			edits.add(new TextEdit(edit.offset, edit.offset + edit.removedTxt.length(), edit.insertedTxt));
+			caretPosition 	= edit.offset + delta + edit.insertedTxt.length();
+			delta 			+= edit.insertedTxt.length() - edit.removedTxt.length();
+		}
+
+		applyHistoryEdits(edits, caretPosition);
+		return true;
+	}
+
+	// DESCRIPTION : Applies the edits of an undo/redo as a batch (so text triggers don't fire again) without recording them :
+	private void applyHistoryEdits(List<TextEdit> edits, int caretPosition)
+	{
+		isUndoing = true;
+
+		try
+		{
+			replaceTexts(edits);
+		}
+		finally
+		{
+			isUndoing = false;
+		}
+
+		positionCaret(caretPosition);
+	}
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// CARET AND SELECTION :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	public ReadOnlyIntegerProperty caretPositionProperty()
+	{
+		return caretPosition.getReadOnlyProperty();
+	}
+
+	public int getCaretPosition()
+	{
+		return caretPosition.get();
+	}
+
+	public ReadOnlyIntegerProperty anchorProperty()
+	{
+		return anchor.getReadOnlyProperty();
+	}
+
+	public int getAnchor()
+	{
+		return anchor.get();
+	}
+
+	// DESCRIPTION : Returns the selected range (between the anchor and the caret) :
+	public IndexRange getSelection()
+	{
+		return IndexRange.normalize(anchor.get(), caretPosition.get());
+	}
+
+	// DESCRIPTION : Selects the text between the two offsets (clamped to the text), the caret at the second one :
+	public void selectRange(int anchorPosition, int caretPosition)
+	{
+		int length = getLength();
+
+		this.anchor.set(Math.max(0, Math.min(anchorPosition, length)));
+		this.caretPosition.set(Math.max(0, Math.min(caretPosition, length)));
+	}
+
+	// DESCRIPTION : Moves the caret, unselecting the text :
+	public void positionCaret(int position)
+	{
+		selectRange(position, position);
+	}
+
+	// DESCRIPTION : Moves the caret, extending the selection from the anchor :
+	public void selectPositionCaret(int position)
+	{
+		selectRange(anchor.get(), position);
+	}
+
+	// DESCRIPTION : Moves the caret after an edit (a move that doesn't seal the current undo step) :
+	private void moveCaret(int anchorPosition, int caretPosition)
+	{
+		isReplacing = true;
+
+		try
+		{
+			selectRange(anchorPosition, caretPosition);
+		}
+		finally
+		{
+			isReplacing = false;
+		}
+	}
+
+	// DESCRIPTION : Removes the control chars the editor refuses to hold (everything below 0x20 except tab and newline) :
+	static String filterInput(String text)
+	{
+		StringBuilder sb = null;
+
+		for(int i = 0; i < text.length(); i++)
+		{
+			char c = text.charAt(i);
+
+			if(c == 0x7F || (c < 0x20 && c != '\n' && c != '\t'))
+			{
+				if(sb == null)
+				{
+					sb = new StringBuilder(text.length());
+					sb.append(text, 0, i);
+				}
+			}
+			else if(sb != null)
+			{
+				sb.append(c);
+			}
+		}
+
+		return (sb == null) ? text : sb.toString();
+	}
+}
@@ -0,0 +1,262 @@
+package texteditor;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+// DESCRIPTION : Guesses the encoding of a file from its first few KB : a byte order mark, then the pattern of null
+//               bytes of UTF-16/UTF-32 text, then UTF-8 validity, and finally a single-byte Windows-1252 guess. Each
+//               guess says whether it is confident, so the user only has to be asked when it is not.
+public class EncodingDetector
+{
+	// CLASS FIELDS :
+	private static final int SAMPLE_SIZE 		= 16 * 1024;
+	private static final Charset WINDOWS_1252 	= Charset.forName("windows-1252");
+
+	// DESCRIPTION : Reads the start of the file (meant to run on a background thread) and guesses its encoding :
+	public static Detection detect(File file) throws IOException
+	{
+		try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+		{
+			// Declare variables :
+			ByteBuffer sample 	= ByteBuffer.allocate((int)Math.min(SAMPLE_SIZE, channel.size()));
+			byte[] bytes 		= null;
+
+			while(sample.hasRemaining() && channel.read(sample) != -1)
+			{
+				// Keep reading until the sample is full...
+			}
+
+			bytes = new byte[sample.position()];
+			sample.flip().get(bytes);
+
+			return detect(bytes, bytes.length == channel.size());
+		}
+	}
+
+	// DESCRIPTION : Guesses the encoding of a sample of bytes (isWholeFile tells if a truncated char at its end is an error) :
+	public static Detection detect(byte[] bytes, boolean isWholeFile)
+	{
+		// Declare variables :
+		int length 				= bytes.length;
+		int[] nullsByPosition 	= new int[4];
+		int nulls 				= 0;
+
+		// BYTE ORDER MARK (the UTF-16/UTF-32 decoders read it to pick the byte order) :
+		if(startsWith(bytes, 0xFF, 0xFE, 0x00, 0x00) || startsWith(bytes, 0x00, 0x00, 0xFE, 0xFF))
+		{
+			return new Detection(Charset.forName("UTF-32"), true);
+		}
+
+		if(startsWith(bytes, 0xEF, 0xBB, 0xBF))
+		{
+			return new Detection(StandardCharsets.UTF_8, true);
+		}
+
+		if(startsWith(bytes, 0xFF, 0xFE) || startsWith(bytes, 0xFE, 0xFF))
+		{
+			return new Detection(StandardCharsets.UTF_16, true);
+		}
+
+		if(length == 0)
+		{
+			return new Detection(StandardCharsets.UTF_8, true);
+		}
+
+		// NULL BYTES : Text in UTF-16/UTF-32 has nulls at fixed positions (mostly Latin text is assumed) :
+		for(int i = 0; i < length; i++)
+		{
+			if(bytes[i] == 0)
+			{
+				nullsByPosition[i & 3]++;
+				nulls++;
+			}
+		}
+
+		if(nulls > 0)
+		{
+			int quarter = length / 4;
+
+			if(nullsByPosition[0] == 0 && isMostly(nullsByPosition[1], quarter) && isMostly(nullsByPosition[2], quarter) && isMostly(nullsByPosition[3], quarter))
+			{
+				return new Detection(Charset.forName("UTF-32LE"), true);
+			}
+
+			if(nullsByPosition[3] == 0 && isMostly(nullsByPosition[0], quarter) && isMostly(nullsByPosition[1], quarter) && isMostly(nullsByPosition[2], quarter))
+			{
+				return new Detection(Charset.forName("UTF-32BE"), true);
+			}
+
+			int evenNulls 	= nullsByPosition[0] + nullsByPosition[2];
+			int oddNulls 	= nullsByPosition[1] + nullsByPosition[3];
+
+			if(evenNulls == 0 && isMostly(oddNulls, length / 2))
+			{
+				return new Detection(StandardCharsets.UTF_16LE, true);
+			}
+
+			if(oddNulls == 0 && isMostly(evenNulls, length / 2))
+			{
+				return new Detection(StandardCharsets.UTF_16BE, true);
+			}
+
+			// Nulls without a pattern : binary data or an encoding we can't tell, let the user choose :
+			return new Detection(isUtf8(bytes, isWholeFile) ? StandardCharsets.UTF_8 : WINDOWS_1252, false);
+		}
+
+		// UTF-8 : Multi-byte sequences are very unlikely to be valid by chance (plain ASCII is valid UTF-8 too) :
+		if(isUtf8(bytes, isWholeFile))
+		{
+			return new Detection(StandardCharsets.UTF_8, true);
+		}
+
+		// SINGLE BYTE : Windows-1252 (a superset of the printable ISO-8859-1), only trusted if the text looks like
+		// text in it :
+		return new Detection(WINDOWS_1252, isPlausibleWindows1252(bytes));
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// HEURISTICS :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	private static boolean startsWith(byte[] bytes, int... prefix)
+	{
+		if(bytes.length < prefix.length)
+		{
+			return false;
+		}
+
+		for(int i = 0; i < prefix.length; i++)
+		{
+			if((bytes[i] & 0xFF) != prefix[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	// DESCRIPTION : True if at least 3/4 of the possible positions hold a null byte :
+	private static boolean isMostly(int count, int positions)
+	{
+		return positions > 0 && count * 4 >= positions * 3;
+	}
+
+	// DESCRIPTION : True if the bytes are well-formed UTF-8 (no overlong forms, surrogates or code points above
+	//               U+10FFFF). A sequence cut by the end of a partial sample is accepted.
+	private static boolean isUtf8(byte[] bytes, boolean isWholeFile)
+	{
+		int i = 0;
+
+		while(i < bytes.length)
+		{
+			int b 				= bytes[i] & 0xFF;
+			int continuations 	= 0;
+			int min 			= 0x80;
+			int max 			= 0xBF;
+
+			if(b < 0x80)
+			{
+				i++;
+				continue;
+			}
+			else if(b >= 0xC2 && b <= 0xDF)
+			{
+				continuations = 1;
+			}
+			else if(b >= 0xE0 && b <= 0xEF)
+			{
+				continuations 	= 2;
+				min 			= (b == 0xE0) ? 0xA0 : 0x80;
+				max 			= (b == 0xED) ? 0x9F : 0xBF;
+			}
+			else if(b >= 0xF0 && b <= 0xF4)
+			{
+				continuations 	= 3;
+				min 			= (b == 0xF0) ? 0x90 : 0x80;
+				max 			= (b == 0xF4) ? 0x8F : 0xBF;
+			}
+			else
+			{
+				return false;
+			}
+
+			// The range check on the second byte rules out the overlong forms, surrogates and too large code points :
+			for(int k = 1; k <= continuations; k++)
+			{
+				if(i + k >= bytes.length)
+				{
+					return !isWholeFile;
+				}
+
+				int c = bytes[i + k] & 0xFF;
+
+				if(c < ((k == 1) ? min : 0x80) || c > ((k == 1) ? max : 0xBF))
+				{
+					return false;
+				}
+			}
+
+			i += continuations + 1;
+		}
+
+		return true;
+	}
+
+	// DESCRIPTION : True if the text looks like Western European text : every byte above ASCII is a printable char
+	//               in Windows-1252, there are no control chars other than tabs and line breaks, and accented chars
+	//               are a small part of the text (otherwise it is more likely Cyrillic, Greek, UTF-16 CJK...).
+	private static boolean isPlausibleWindows1252(byte[] bytes)
+	{
+		// Declare variables :
+		String decoded 	= new String(bytes, WINDOWS_1252);
+		int highBytes 	= 0;
+
+		for(int i = 0; i < bytes.length; i++)
+		{
+			int b 	= bytes[i] & 0xFF;
+			char c 	= decoded.charAt(i);
+
+			if(b < 0x20 && b != '\t' && b != '\n' && b != '\r' && b != '\f')
+			{
+				return false;
+			}
+
+			if(b >= 0x80 && (c == '\uFFFD' || Character.isISOControl(c)))
+			{
+				return false;
+			}
+
+			if(b >= 0x80)
+			{
+				highBytes++;
+			}
+		}
+
+		return highBytes * 5 <= bytes.length;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DETECTION :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	public static final class Detection
+	{
+		// CLASS FIELDS :
+		public final Charset charset;
+		public final boolean isConfident;
+
+		// CONSTRUCTOR :
+		Detection(Charset charset, boolean isConfident)
+		{
+			this.charset 		= charset;
+			this.isConfident 	= isConfident;
+		}
+	}
+}
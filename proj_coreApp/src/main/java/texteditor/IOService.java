@@ -0,0 +1,84 @@
+package texteditor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javafx.concurrent.Task;
+
+// DESCRIPTION : Runs the editor's file tasks off the FX thread. Reading tasks (encoding detection, loading,
+//               line indexing) run on a pool of threads, while saves run one after the other on their own
+//               thread, so two saves of the same file always land in the order they were asked for. The
+//               tasks still running are tracked so they can be cancelled, and the pending saves finished,
+//               when the editor closes.
+public class IOService
+{
+	// CLASS FIELDS :
+	private ExecutorService readExecutor 	= Executors.newCachedThreadPool(runnable -> newThread(runnable, "file-read"));
+	private ExecutorService saveExecutor 	= Executors.newSingleThreadExecutor(runnable -> newThread(runnable, "file-save"));
+	private Set<Task<?>> running 			= ConcurrentHashMap.newKeySet();
+
+	// DESCRIPTION : Runs a task that reads files :
+	public <T extends Task<?>> T submit(T task)
+	{
+		return run(task, readExecutor);
+	}
+
+	// DESCRIPTION : Runs a save after the saves already submitted :
+	public <T extends Task<?>> T submitSave(T task)
+	{
+		return run(task, saveExecutor);
+	}
+
+	// DESCRIPTION : Cancels the reading tasks and waits (up to the timeout) for the saves to finish writing :
+	public void shutdown(long timeoutMillis)
+	{
+		readExecutor.shutdownNow();
+		saveExecutor.shutdown();
+
+		for(Task<?> task : running)
+		{
+			if(!(task instanceof DocumentSaver))
+			{
+				task.cancel();
+			}
+		}
+
+		try
+		{
+			saveExecutor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private <T extends Task<?>> T run(T task, ExecutorService executor)
+	{
+		running.add(task);
+
+		executor.execute(() ->
+		{
+			try
+			{
+				task.run();
+			}
+			finally
+			{
+				running.remove(task);
+			}
+		});
+
+		return task;
+	}
+
+	private static Thread newThread(Runnable runnable, String name)
+	{
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		return thread;
+	}
+}
@@ -0,0 +1,62 @@
+package texteditor;
+
+import java.util.Arrays;
+
+import javafx.scene.input.KeyCode;
+
+// DESCRIPTION : Dispatch table for key presses. Each (KeyCode, ctrl, shift, alt) combination is packed into an
+//               int which directly indexes an array of the handlers bound to it, so a key press costs one
+//               array lookup however many keymap entries and plugin callbacks are registered.
+public class KeyDispatchTable
+{
+	// CLASS FIELDS :
+	private static final int MODIFIER_BITS 	= 3;
+	private static final Runnable[] NONE 	= new Runnable[0];
+
+	private Runnable[][] handlers 			= new Runnable[KeyCode.values().length << MODIFIER_BITS][];
+
+	// DESCRIPTION : Packs a key and its modifier states into a single int :
+	public static int pack(KeyCode code, boolean ctrl, boolean shift, boolean alt)
+	{
+		return (code.ordinal() << MODIFIER_BITS) | (ctrl ? 4 : 0) | (shift ? 2 : 0) | (alt ? 1 : 0);
+	}
+
+	// DESCRIPTION : Binds a handler to a key combination (handlers run in the order they were added) :
+	public void add(KeyCode code, boolean ctrl, boolean shift, boolean alt, Runnable handler)
+	{
+		int slot 			= pack(code, ctrl, shift, alt);
+		Runnable[] current 	= (handlers[slot] == null) ? NONE : handlers[slot];
+		Runnable[] updated 	= Arrays.copyOf(current, current.length + 1);
+
+		// Copy-on-write, a dispatch in progress keeps iterating over the old array :
+		updated[current.length] = handler;
+		handlers[slot] 			= updated;
+	}
+
+	// DESCRIPTION : Binds a handler to a key whatever the modifiers pressed with it :
+	public void addForAllModifiers(KeyCode code, Runnable handler)
+	{
+		for(int modifiers = 0; modifiers < (1 << MODIFIER_BITS); modifiers++)
+		{
+			add(code, (modifiers & 4) != 0, (modifiers & 2) != 0, (modifiers & 1) != 0, handler);
+		}
+	}
+
+	// DESCRIPTION : Runs the handlers bound to the key combination, returns false if there are none :
+	public boolean dispatch(KeyCode code, boolean ctrl, boolean shift, boolean alt)
+	{
+		Runnable[] bound = handlers[pack(code, ctrl, shift, alt)];
+
+		if(bound == null)
+		{
+			return false;
+		}
+
+		for(Runnable handler : bound)
+		{
+			handler.run();
+		}
+
+		return true;
+	}
+}
@@ -0,0 +1,103 @@
+package texteditor;
+
+import java.io.IOException;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableListBase;
+import javafx.concurrent.Task;
+import javafx.scene.control.ListView;
+
+// DESCRIPTION : Read-only viewer for files too large to load into the editor. It shows a MappedTextFile one
+//               line per row; the ListView only creates cells for the rows in the viewport, so only the
+//               visible lines are ever decoded.
+public class LargeFileView extends ListView<String>
+{
+	// CLASS FIELDS :
+	private MappedTextFile mappedFile 	= null;
+	private LineList lines 				= new LineList();
+	private Task<Void> indexTask 		= null;
+
+	// CONSTRUCTOR :
+	public LargeFileView(MappedTextFile mappedFile)
+	{
+		this.mappedFile = mappedFile;
+
+		setItems(lines);
+		setEditable(false);
+		setStyle("-fx-font-family: 'monospace'");
+	}
+
+	// DESCRIPTION : Creates the task that builds the line index in the background. Rows are added to the view
+	//               while the file is being scanned, so the start of the file can be read straight away.
+	public Task<Void> createIndexTask()
+	{
+		indexTask = new Task<>()
+		{
+			@Override
+			protected Void call()
+			{
+				mappedFile.buildIndex((bytesDone, bytesTotal) ->
+				{
+					updateProgress(bytesDone, bytesTotal);
+					Platform.runLater(() -> lines.update());
+
+					return !isCancelled();
+				});
+
+				return null;
+			}
+		};
+
+		return indexTask;
+	}
+
+	// DESCRIPTION : Stops indexing and closes the mapped file :
+	public void close() throws IOException
+	{
+		if(indexTask != null)
+		{
+			indexTask.cancel();
+		}
+
+		mappedFile.close();
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// LINE LIST :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : List of lines whose items are decoded from the mapped file on demand :
+	private class LineList extends ObservableListBase<String>
+	{
+		// CLASS FIELDS :
+		int size = 1;
+
+		@Override
+		public String get(int index)
+		{
+			return mappedFile.getLine(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+
+		// DESCRIPTION : Adds the rows for the lines indexed since the last update :
+		void update()
+		{
+			int newSize = mappedFile.getLineCount();
+
+			if(newSize > size)
+			{
+				int oldSize = size;
+
+				beginChange();
+				size = newSize;
+				nextAdd(oldSize, newSize);
+				endChange();
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package texteditor;
+
+import java.util.Arrays;
+
+// DESCRIPTION : Offsets of the start of every line of the document, kept up to date on each edit. The offsets
+//               are stored in a gap buffer : the entries before the gap hold absolute offsets and the entries
+//               after it hold their distance from the end of the document, so an edit only has to touch the
+//               lines it adds or removes (and move the gap there, which is cheap as edits are usually close
+//               to each other). Looking up the line of an offset is a binary search.
+public class LineIndex
+{
+	// CLASS FIELDS :
+	private int[] starts 		= new int[16];
+	private int gapStart 		= 0;
+	private int gapEnd 			= 16;
+	private int length 			= 0;
+
+	// CONSTRUCTOR :
+	public LineIndex(CharSequence text)
+	{
+		addLineStart(0);
+
+		for(int i = 0; i < text.length(); i++)
+		{
+			if(text.charAt(i) == '\n')
+			{
+				addLineStart(i + 1);
+			}
+		}
+
+		length = text.length();
+	}
+
+	// DESCRIPTION : Returns the number of lines :
+	public int getLineCount()
+	{
+		return gapStart + (starts.length - gapEnd);
+	}
+
+	// DESCRIPTION : Returns the offset where the line starts :
+	public int getLineStart(int line)
+	{
+		if(line < 0 || line >= getLineCount())
+		{
+			throw new IndexOutOfBoundsException("Line: " + line + ", Lines: " + getLineCount());
+		}
+
+		return (line < gapStart) ? starts[line] : (length - starts[gapEnd + (line - gapStart)]);
+	}
+
+	// DESCRIPTION : Returns the line containing the offset :
+	public int getLineOfOffset(int offset)
+	{
+		int low 	= 0;
+		int high 	= getLineCount() - 1;
+
+		// Find the last line starting at or before the offset :
+		while(low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+
+			if(getLineStart(mid) <= offset)
+			{
+				low = mid;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+
+		return low;
+	}
+
+	// DESCRIPTION : Returns the offset where the line containing the given offset starts :
+	public int getLineStartOfOffset(int offset)
+	{
+		return getLineStart(getLineOfOffset(offset));
+	}
+
+	// DESCRIPTION : Updates the line starts after the text at offset was replaced :
+	public void textReplaced(int offset, CharSequence removedTxt, CharSequence insertedTxt)
+	{
+		// STEP 1 : Move the gap just after the last line starting at or before the offset :
+		moveGap(getLineOfOffset(offset) + 1);
+
+		// STEP 2 : Drop the lines whose newline was removed :
+		int removedEnd = offset + removedTxt.length();
+
+		while(gapEnd < starts.length && (length - starts[gapEnd]) <= removedEnd)
+		{
+			gapEnd++;
+		}
+
+		// STEP 3 : The entries after the gap are relative to the end, so they shift by themselves :
+		length += insertedTxt.length() - removedTxt.length();
+
+		// STEP 4 : Add the lines started by the inserted text :
+		for(int i = 0; i < insertedTxt.length(); i++)
+		{
+			if(insertedTxt.charAt(i) == '\n')
+			{
+				addLineStart(offset + i + 1);
+			}
+		}
+	}
+
+	// DESCRIPTION : Moves the gap so that it starts before the given line :
+	private void moveGap(int line)
+	{
+		while(gapStart > line)
+		{
+			gapStart--;
+			gapEnd--;
+			starts[gapEnd] = length - starts[gapStart];
+		}
+
+		while(gapStart < line)
+		{
+			starts[gapStart] = length - starts[gapEnd];
+			gapStart++;
+			gapEnd++;
+		}
+	}
+
+	// DESCRIPTION : Adds a line start (absolute offset) at the start of the gap, growing the array if needed :
+	private void addLineStart(int offset)
+	{
+		if(gapStart == gapEnd)
+		{
+			int tail 		= starts.length - gapEnd;
+			int[] grown 	= Arrays.copyOf(starts, starts.length * 2);
+
+			System.arraycopy(starts, gapEnd, grown, grown.length - tail, tail);
+
+			gapEnd 	= grown.length - tail;
+			starts 	= grown;
+		}
+
+		starts[gapStart] = offset;
+		gapStart++;
+	}
+}
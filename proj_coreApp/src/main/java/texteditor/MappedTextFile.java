@@ -0,0 +1,382 @@
+package texteditor;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// DESCRIPTION : Read-only view of a (possibly multi-gigabyte) text file that is memory-mapped instead of read
+//               into the heap. A sparse index keeps the byte offset of every LINE_INDEX_STEP-th line, so any
+//               line can be found by scanning at most LINE_INDEX_STEP lines, and lines are only decoded when
+//               they are asked for.
+public class MappedTextFile implements Closeable
+{
+	// CLASS FIELDS :
+	private static final long SEGMENT_SIZE 		= 1L << 30;
+	private static final int LINE_INDEX_STEP	= 128;
+	private static final int MAX_LINE_BYTES		= 64 * 1024;
+
+	private FileChannel channel 				= null;
+	private MappedByteBuffer[] segments 		= null;
+	private long fileSize 						= 0;
+	private long dataStart 						= 0;
+	private Charset charset 					= null;
+	private CharsetDecoder decoder 				= null;
+	private byte[] newline 						= null;
+	private volatile long[] lineIndex 			= new long[1024];
+	private volatile long lineCount 			= 1;
+	private volatile boolean isClosed			= false;
+	private boolean isIndexing					= false;
+	private Object indexLock					= new Object();
+	private long lastLine						= -1;
+	private long lastLineStart					= 0;
+
+	// CONSTRUCTOR :
+	public MappedTextFile(File file, Charset charset) throws IOException
+	{
+		this.channel 	= FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		this.fileSize 	= channel.size();
+		this.segments 	= new MappedByteBuffer[(int)((fileSize + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+
+		// Map the file in segments (a single mapping is limited to 2GB) :
+		for(int i = 0; i < segments.length; i++)
+		{
+			long start 	= i * SEGMENT_SIZE;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+		}
+
+		this.charset 	= resolveCharset(charset);
+		this.newline 	= encodedNewline(this.charset);
+		this.decoder 	= this.charset.newDecoder()
+								.onMalformedInput(CodingErrorAction.REPLACE)
+								.onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+		lineIndex[0] = dataStart;
+	}
+
+	// DESCRIPTION : Returns the number of lines indexed so far (capped to the number of rows a view can show) :
+	public int getLineCount()
+	{
+		return (int)Math.min(lineCount, Integer.MAX_VALUE);
+	}
+
+	// DESCRIPTION : Returns the size of the file in bytes :
+	public long getFileSize()
+	{
+		return fileSize;
+	}
+
+	// DESCRIPTION : Scans the whole file for line breaks and fills the sparse line index. Meant to run on a
+	//               background thread, the progress callback receives the number of bytes scanned so far.
+	//               (if the file is closed meanwhile, the scan stops and the file is unmapped here, not under it)
+	public void buildIndex(IndexProgress progress)
+	{
+		synchronized(indexLock)
+		{
+			if(isClosed)
+			{
+				return;
+			}
+
+			isIndexing = true;
+		}
+
+		try
+		{
+			scanLines(progress);
+		}
+		finally
+		{
+			synchronized(indexLock)
+			{
+				isIndexing = false;
+			}
+
+			if(isClosed)
+			{
+				release();
+			}
+		}
+	}
+
+	private void scanLines(IndexProgress progress)
+	{
+		// Declare variables :
+		long pos 		= dataStart;
+		int unit 		= newline.length;
+		long lines 		= 1;
+		long[] index 	= lineIndex;
+		long nextReport	= 0;
+
+		while(pos + unit <= fileSize)
+		{
+			if(isNewline(pos))
+			{
+				pos += unit;
+
+				// Keep the start of every LINE_INDEX_STEP-th line :
+				if(lines % LINE_INDEX_STEP == 0)
+				{
+					int slot = (int)(lines / LINE_INDEX_STEP);
+
+					if(slot >= index.length)
+					{
+						index 		= Arrays.copyOf(index, index.length * 2);
+						lineIndex 	= index;
+					}
+
+					index[slot] = pos;
+				}
+
+				lines++;
+			}
+			else
+			{
+				pos += unit;
+			}
+
+			// Publish the lines found so far every few MB :
+			if(pos >= nextReport)
+			{
+				lineCount = lines;
+
+				if(isClosed || !progress.indexed(pos - dataStart, fileSize - dataStart))
+				{
+					return;
+				}
+
+				nextReport = pos + (8 * 1024 * 1024);
+			}
+		}
+
+		lineCount = lines;
+		progress.indexed(fileSize - dataStart, fileSize - dataStart);
+	}
+
+	// DESCRIPTION : Decodes and returns the given line (without its line break) :
+	public synchronized String getLine(int line)
+	{
+		// (a row may still be asked for by an update queued before the view was closed)
+		if(isClosed)
+		{
+			return "";
+		}
+
+		if(line < 0 || line >= lineCount)
+		{
+			throw new IndexOutOfBoundsException("Line: " + line + ", Lines: " + lineCount);
+		}
+
+		long start 	= findLineStart(line);
+		long end 	= findLineEnd(start);
+		boolean cut = (end - start) > MAX_LINE_BYTES;
+
+		if(cut)
+		{
+			end = start + MAX_LINE_BYTES - (MAX_LINE_BYTES % newline.length);
+		}
+
+		// Copy the line bytes (may span two mapped segments) :
+		byte[] bytes = new byte[(int)(end - start)];
+
+		for(int i = 0; i < bytes.length; i++)
+		{
+			bytes[i] = get(start + i);
+		}
+
+		lastLine 		= line;
+		lastLineStart 	= start;
+
+		try
+		{
+			decoder.reset();
+			CharBuffer chars 	= decoder.decode(ByteBuffer.wrap(bytes));
+			String lineStr		= chars.toString();
+
+			// Hide the '\r' of CRLF line endings :
+			if(lineStr.endsWith("\r"))
+			{
+				lineStr = lineStr.substring(0, lineStr.length() - 1);
+			}
+
+			return cut ? (lineStr + " \u2026") : lineStr;
+		}
+		catch(CharacterCodingException e)
+		{
+			// Cannot happen with REPLACE actions :
+			return "";
+		}
+	}
+
+	// DESCRIPTION : Unmaps (as far as the JVM allows) and closes the file. While the index is being built, this only
+	//               tells the indexing thread to stop, and it releases the file itself (so the caller never waits) :
+	@Override
+	public void close() throws IOException
+	{
+		synchronized(indexLock)
+		{
+			isClosed = true;
+
+			if(isIndexing)
+			{
+				return;
+			}
+		}
+
+		release();
+	}
+
+	private void release()
+	{
+		synchronized(this)
+		{
+			segments = new MappedByteBuffer[0];
+
+			try
+			{
+				channel.close();
+			}
+			catch(IOException e)
+			{
+				// Do nothing... (the file was only read)
+			}
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// LINE LOOKUP :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Finds the byte offset of a line, starting from the closest indexed line (or the last line
+	//               read when scrolling forwards, which is the common case) :
+	private long findLineStart(int line)
+	{
+		long pos 		= lineIndex[line / LINE_INDEX_STEP];
+		long current 	= (long)(line / LINE_INDEX_STEP) * LINE_INDEX_STEP;
+
+		if(lastLine >= current && lastLine <= line)
+		{
+			pos 	= lastLineStart;
+			current = lastLine;
+		}
+
+		while(current < line)
+		{
+			pos = findLineEnd(pos) + newline.length;
+			current++;
+		}
+
+		return pos;
+	}
+
+	// DESCRIPTION : Returns the offset of the line break ending the line that starts at the given offset :
+	private long findLineEnd(long pos)
+	{
+		while(pos + newline.length <= fileSize && !isNewline(pos))
+		{
+			pos += newline.length;
+		}
+
+		return Math.min(pos, fileSize);
+	}
+
+	private boolean isNewline(long pos)
+	{
+		for(int i = 0; i < newline.length; i++)
+		{
+			if(get(pos + i) != newline[i])
+			{
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private byte get(long pos)
+	{
+		return segments[(int)(pos / SEGMENT_SIZE)].get((int)(pos % SEGMENT_SIZE));
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// ENCODING :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Lines are decoded one by one, so a byte order mark can only be honoured by picking the
+	//               fixed-endian charset it stands for and skipping it :
+	private Charset resolveCharset(Charset charset)
+	{
+		byte b0 = (fileSize > 0) ? get(0) : 0;
+		byte b1 = (fileSize > 1) ? get(1) : 0;
+		byte b2 = (fileSize > 2) ? get(2) : 0;
+		byte b3 = (fileSize > 3) ? get(3) : 0;
+
+		switch(charset.name())
+		{
+			case "UTF-8":
+				if(b0 == (byte)0xEF && b1 == (byte)0xBB && b2 == (byte)0xBF)
+				{
+					dataStart = 3;
+				}
+			break;
+
+			case "UTF-16":
+				if(b0 == (byte)0xFF && b1 == (byte)0xFE)
+				{
+					dataStart = 2;
+					return StandardCharsets.UTF_16LE;
+				}
+				else if(b0 == (byte)0xFE && b1 == (byte)0xFF)
+				{
+					dataStart = 2;
+				}
+				return StandardCharsets.UTF_16BE;
+
+			case "UTF-32":
+				if(b0 == (byte)0xFF && b1 == (byte)0xFE && b2 == 0 && b3 == 0)
+				{
+					dataStart = 4;
+					return Charset.forName("UTF-32LE");
+				}
+				else if(b0 == 0 && b1 == 0 && b2 == (byte)0xFE && b3 == (byte)0xFF)
+				{
+					dataStart = 4;
+				}
+				return Charset.forName("UTF-32BE");
+		}
+
+		return charset;
+	}
+
+	// DESCRIPTION : Returns the bytes of '\n' in the charset (its size is also the width of a code unit) :
+	private static byte[] encodedNewline(Charset charset)
+	{
+		byte[] one = "\n".getBytes(charset);
+		byte[] two = "\n\n".getBytes(charset);
+
+		// Encoding two newlines and keeping the difference drops any byte order mark :
+		return Arrays.copyOfRange(two, one.length, two.length);
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// INDEX PROGRESS CALLBACK :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	public interface IndexProgress
+	{
+		// Returns false to stop indexing :
+		boolean indexed(long bytesDone, long bytesTotal);
+	}
+}
@@ -0,0 +1,579 @@
+package texteditor;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+// DESCRIPTION : Document model of the editor. The text is held as an ordered list of pieces, each one
+//               pointing at a range of either the immutable original buffer (the loaded file) or the
+//               append-only add buffer (everything typed/inserted since). Edits only split, trim or add
+//               pieces around the edit offset, so they never copy the whole document.
+public class PieceTable implements CharSequence
+{
+	// CLASS FIELDS :
+	private static final int ADD_BLOCK_SIZE	= 64 * 1024;
+
+	private ArrayList<Piece> pieces 		= new ArrayList<>();
+	private char[] addBlock					= null;
+	private CharBuffer addView				= null;
+	private int addUsed 					= 0;
+	private int length 						= 0;
+	private int cacheIdx					= 0;
+	private int cacheStart					= 0;
+
+	// CONSTRUCTOR :
+	public PieceTable(CharSequence original)
+	{
+		if(original.length() > 0)
+		{
+			pieces.add(new Piece(original, 0, original.length()));
+			length = original.length();
+		}
+	}
+
+	// DESCRIPTION : Returns the number of chars in the document :
+	@Override
+	public int length()
+	{
+		return length;
+	}
+
+	// DESCRIPTION : Returns the char at the given document offset :
+	@Override
+	public char charAt(int index)
+	{
+		if(index < 0 || index >= length)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+		}
+
+		int idx 	= findPiece(index);
+		Piece piece = pieces.get(idx);
+
+		return piece.buffer.charAt(piece.start + (index - cacheStart));
+	}
+
+	// DESCRIPTION : Copies the text between the two offsets into a new String :
+	@Override
+	public CharSequence subSequence(int start, int end)
+	{
+		return getText(start, end);
+	}
+
+	// DESCRIPTION : Copies the text between the two offsets into a new String :
+	public String getText(int start, int end)
+	{
+		checkRange(start, end);
+
+		StringBuilder sb = new StringBuilder(end - start);
+		appendTo(sb, start, end);
+
+		return sb.toString();
+	}
+
+	// DESCRIPTION : Appends the text between the two offsets to a StringBuilder (only the pieces in range are visited) :
+	public void appendTo(StringBuilder sb, int start, int end)
+	{
+		checkRange(start, end);
+
+		if(start == end)
+		{
+			return;
+		}
+
+		int idx 		= findPiece(start);
+		int pieceStart 	= cacheStart;
+
+		while(pieceStart < end)
+		{
+			Piece piece = pieces.get(idx);
+			int from 	= Math.max(start, pieceStart) - pieceStart;
+			int to 		= Math.min(end, pieceStart + piece.length) - pieceStart;
+
+			piece.appendTo(sb, from, to);
+
+			pieceStart += piece.length;
+			idx++;
+		}
+	}
+
+	// DESCRIPTION : Returns a read-only view of the current text that later edits don't affect. Only the piece
+	//               list is copied (not the chars), and the view can be read from any thread.
+	public Snapshot snapshot()
+	{
+		return new Snapshot(pieces.toArray(new Piece[0]));
+	}
+
+	// DESCRIPTION : Inserts text at the given offset :
+	public void insert(int offset, CharSequence text)
+	{
+		checkRange(offset, offset);
+
+		if(text.length() == 0)
+		{
+			return;
+		}
+
+		int addStart 	= appendToAddBuffer(text);
+		int idx 		= splitAt(offset);
+
+		// Typing extends the piece that was just added instead of creating a new one :
+		if(idx > 0)
+		{
+			Piece prev = pieces.get(idx - 1);
+
+			if(prev.buffer == addView && (prev.start + prev.length) == addStart)
+			{
+				pieces.set(idx - 1, new Piece(addView, prev.start, prev.length + text.length()));
+				length += text.length();
+				setCache(idx - 1, offset - prev.length);
+				return;
+			}
+		}
+
+		pieces.add(idx, new Piece(addView, addStart, text.length()));
+		length += text.length();
+		setCache(idx, offset);
+	}
+
+	// DESCRIPTION : Deletes the text between the two offsets :
+	public void delete(int start, int end)
+	{
+		checkRange(start, end);
+
+		if(start == end)
+		{
+			return;
+		}
+
+		int first 	= splitAt(start);
+		int last 	= splitAt(end);
+
+		pieces.subList(first, last).clear();
+		length -= (end - start);
+		setCache(first, start);
+	}
+
+	// DESCRIPTION : Replaces the text between the two offsets with new text :
+	public void replace(int start, int end, CharSequence text)
+	{
+		delete(start, end);
+		insert(start, text);
+	}
+
+	// DESCRIPTION : Applies a list of edits sorted by offset, not overlapping, and whose offsets all refer to the
+	//               text before the edits. The new piece list is built in a single pass over the old one (the
+	//               text between the edits is not copied), and edits inserting the same String share its chars.
+	public void applyEdits(List<TextEdit> edits)
+	{
+		// Declare variables :
+		ArrayList<Piece> result 	= new ArrayList<>(pieces.size() + 2 * edits.size());
+		int idx 					= 0;
+		int pieceStart 				= 0;
+		int copied 					= 0;
+		int newLength 				= length;
+		String lastTxt 				= null;
+		Piece lastTxtPiece 			= null;
+
+		// Check all the edits first, so a bad one leaves the document untouched :
+		for(TextEdit edit : edits)
+		{
+			checkRange(edit.start, edit.end);
+
+			if(edit.start < copied)
+			{
+				throw new IllegalArgumentException("Edits overlap or are not sorted at offset " + edit.start);
+			}
+
+			copied 		= edit.end;
+			newLength 	+= edit.text.length() - (edit.end - edit.start);
+		}
+
+		copied = 0;
+
+		for(TextEdit edit : edits)
+		{
+			// Keep the text before the edit (whole pieces, or the part of them in range) :
+			while(copied < edit.start)
+			{
+				Piece piece 	= pieces.get(idx);
+				int from 		= copied - pieceStart;
+				int to 			= Math.min(edit.start, pieceStart + piece.length) - pieceStart;
+
+				result.add((from == 0 && to == piece.length) ? piece : new Piece(piece.buffer, piece.start + from, to - from));
+				copied = pieceStart + to;
+
+				if(to == piece.length)
+				{
+					pieceStart += piece.length;
+					idx++;
+				}
+			}
+
+			// Add the new text (the same String inserted again points at the chars already added) :
+			if(!edit.text.isEmpty())
+			{
+				if(edit.text != lastTxt)
+				{
+					int addStart = appendToAddBuffer(edit.text);
+
+					lastTxt 		= edit.text;
+					lastTxtPiece 	= new Piece(addView, addStart, edit.text.length());
+				}
+
+				result.add(lastTxtPiece);
+			}
+
+			// Skip the replaced text :
+			copied = edit.end;
+
+			while(idx < pieces.size() && pieceStart + pieces.get(idx).length <= copied)
+			{
+				pieceStart += pieces.get(idx).length;
+				idx++;
+			}
+		}
+
+		// Keep the text after the last edit :
+		for(; idx < pieces.size(); idx++)
+		{
+			Piece piece = pieces.get(idx);
+			int from 	= Math.max(copied - pieceStart, 0);
+
+			result.add((from == 0) ? piece : new Piece(piece.buffer, piece.start + from, piece.length - from));
+			pieceStart += piece.length;
+		}
+
+		pieces = result;
+		length = newLength;
+		setCache(0, 0);
+	}
+
+	// DESCRIPTION : Returns the full document as a String (copies the whole text, avoid on hot paths) :
+	@Override
+	public String toString()
+	{
+		return getText(0, length);
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// PIECE HANDLING :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Copies text to the end of the add buffer and returns where it starts. A full block is
+	//               never grown in place : a new one is started so existing pieces keep pointing at stable chars.
+	private int appendToAddBuffer(CharSequence text)
+	{
+		int len = text.length();
+
+		if(addBlock == null || (addBlock.length - addUsed) < len)
+		{
+			addBlock 	= new char[Math.max(ADD_BLOCK_SIZE, len)];
+			addView		= CharBuffer.wrap(addBlock);
+			addUsed 	= 0;
+		}
+
+		int start = addUsed;
+
+		if(text instanceof String)
+		{
+			((String)text).getChars(0, len, addBlock, start);
+		}
+		else
+		{
+			for(int i = 0; i < len; i++)
+			{
+				addBlock[start + i] = text.charAt(i);
+			}
+		}
+
+		addUsed += len;
+
+		return start;
+	}
+
+	// DESCRIPTION : Makes sure a piece boundary exists at the offset and returns the index of the piece starting there :
+	private int splitAt(int offset)
+	{
+		if(offset == length)
+		{
+			return pieces.size();
+		}
+
+		int idx 	= findPiece(offset);
+		Piece piece = pieces.get(idx);
+		int rel 	= offset - cacheStart;
+
+		if(rel == 0)
+		{
+			return idx;
+		}
+
+		// Split the piece into a left and right part :
+		pieces.set(idx, new Piece(piece.buffer, piece.start, rel));
+		pieces.add(idx + 1, new Piece(piece.buffer, piece.start + rel, piece.length - rel));
+		setCache(idx + 1, offset);
+
+		return idx + 1;
+	}
+
+	// DESCRIPTION : Finds the index of the piece containing the offset. The search starts from the last piece
+	//               visited so edits and reads close to each other (typing, sequential charAt) stay O(1).
+	private int findPiece(int offset)
+	{
+		int idx 	= cacheIdx;
+		int start 	= cacheStart;
+
+		// Walk backwards :
+		while(offset < start)
+		{
+			idx--;
+			start -= pieces.get(idx).length;
+		}
+
+		// Walk forwards :
+		while(offset >= start + pieces.get(idx).length)
+		{
+			start += pieces.get(idx).length;
+			idx++;
+		}
+
+		setCache(idx, start);
+
+		return idx;
+	}
+
+	private void setCache(int idx, int start)
+	{
+		if(idx >= pieces.size())
+		{
+			idx 	= 0;
+			start 	= 0;
+		}
+
+		cacheIdx 	= idx;
+		cacheStart 	= start;
+	}
+
+	private void checkRange(int start, int end)
+	{
+		if(start < 0 || end > length || start > end)
+		{
+			throw new IndexOutOfBoundsException("Range: [" + start + ", " + end + "), Length: " + length);
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// SNAPSHOT :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	public static final class Snapshot implements CharSequence
+	{
+		// CLASS FIELDS :
+		private final Piece[] pieces;
+		private final int[] pieceStarts;
+		private final int offset;
+		private final int length;
+		private int hintIdx 			= 0;
+
+		// CONSTRUCTOR :
+		private Snapshot(Piece[] pieces)
+		{
+			this.pieces 		= pieces;
+			this.pieceStarts 	= new int[pieces.length];
+
+			int start = 0;
+
+			for(int i = 0; i < pieces.length; i++)
+			{
+				pieceStarts[i] 	= start;
+				start 			+= pieces[i].length;
+			}
+
+			this.offset = 0;
+			this.length = start;
+		}
+
+		// CONSTRUCTOR (sub-sequence sharing the pieces of its parent) :
+		private Snapshot(Snapshot parent, int start, int end)
+		{
+			this.pieces 		= parent.pieces;
+			this.pieceStarts 	= parent.pieceStarts;
+			this.offset 		= parent.offset + start;
+			this.length 		= end - start;
+		}
+
+		// DESCRIPTION : Returns the number of chars in the view :
+		@Override
+		public int length()
+		{
+			return length;
+		}
+
+		// DESCRIPTION : Returns the char at the given offset of the view :
+		@Override
+		public char charAt(int index)
+		{
+			if(index < 0 || index >= length)
+			{
+				throw new IndexOutOfBoundsException("Index: " + index + ", Length: " + length);
+			}
+
+			int docOffset 	= offset + index;
+			int idx 		= findPiece(docOffset);
+			Piece piece 	= pieces[idx];
+
+			return piece.buffer.charAt(piece.start + (docOffset - pieceStarts[idx]));
+		}
+
+		// DESCRIPTION : Returns a view of the chars between the two offsets (no copy) :
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			checkViewRange(start, end);
+
+			return new Snapshot(this, start, end);
+		}
+
+		// DESCRIPTION : Copies the text between the two offsets into a new String :
+		public String getText(int start, int end)
+		{
+			checkViewRange(start, end);
+
+			if(start == end)
+			{
+				return "";
+			}
+
+			StringBuilder sb 	= new StringBuilder(end - start);
+			int from 			= offset + start;
+			int to 				= offset + end;
+
+			for(int idx = findPiece(from); idx < pieces.length && pieceStarts[idx] < to; idx++)
+			{
+				int pieceStart = pieceStarts[idx];
+
+				pieces[idx].appendTo(sb, Math.max(from, pieceStart) - pieceStart, Math.min(to, pieceStart + pieces[idx].length) - pieceStart);
+			}
+
+			return sb.toString();
+		}
+
+		// DESCRIPTION : Returns the view as a list of read-only char buffers (one per piece) without copying any text,
+		//               e.g. to write it out on another thread :
+		public List<CharBuffer> getChunks()
+		{
+			// Declare variables :
+			ArrayList<CharBuffer> chunks 	= new ArrayList<>();
+			int from 						= offset;
+			int to 							= offset + length;
+
+			for(int idx = (length == 0) ? pieces.length : findPiece(from); idx < pieces.length && pieceStarts[idx] < to; idx++)
+			{
+				Piece piece 	= pieces[idx];
+				int pieceFrom 	= Math.max(from - pieceStarts[idx], 0);
+				int pieceTo 	= Math.min(to - pieceStarts[idx], piece.length);
+				CharBuffer chunk	= piece.asCharBuffer();
+
+				chunks.add((pieceFrom == 0 && pieceTo == piece.length) ? chunk : chunk.subSequence(pieceFrom, pieceTo).slice());
+			}
+
+			return chunks;
+		}
+
+		// DESCRIPTION : Returns the whole view as a String (copies the text) :
+		@Override
+		public String toString()
+		{
+			return getText(0, length);
+		}
+
+		// DESCRIPTION : Finds the piece containing the document offset, trying the last piece found first (sequential
+		//               reads). The hint is only a starting guess, so threads sharing the view can't corrupt it.
+		private int findPiece(int docOffset)
+		{
+			int hint = hintIdx;
+
+			if(docOffset >= pieceStarts[hint] && docOffset < pieceStarts[hint] + pieces[hint].length)
+			{
+				return hint;
+			}
+
+			int low 	= 0;
+			int high 	= pieces.length - 1;
+
+			while(low < high)
+			{
+				int mid = (low + high + 1) >>> 1;
+
+				if(pieceStarts[mid] <= docOffset)
+				{
+					low = mid;
+				}
+				else
+				{
+					high = mid - 1;
+				}
+			}
+
+			hintIdx = low;
+
+			return low;
+		}
+
+		private void checkViewRange(int start, int end)
+		{
+			if(start < 0 || end > length || start > end)
+			{
+				throw new IndexOutOfBoundsException("Range: [" + start + ", " + end + "), Length: " + length);
+			}
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// PIECE :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	private static final class Piece
+	{
+		// CLASS FIELDS :
+		final CharSequence buffer;
+		final int start;
+		final int length;
+
+		// CONSTRUCTOR :
+		Piece(CharSequence buffer, int start, int length)
+		{
+			this.buffer = buffer;
+			this.start 	= start;
+			this.length = length;
+		}
+
+		// DESCRIPTION : Appends the chars [from, to) of this piece (relative to the piece) :
+		void appendTo(StringBuilder sb, int from, int to)
+		{
+			if(buffer instanceof CharBuffer && ((CharBuffer)buffer).hasArray())
+			{
+				CharBuffer cb = (CharBuffer)buffer;
+				sb.append(cb.array(), cb.arrayOffset() + start + from, to - from);
+			}
+			else
+			{
+				sb.append(buffer, start + from, start + to);
+			}
+		}
+
+		// DESCRIPTION : Wraps the chars of this piece in a read-only buffer (no copy) :
+		CharBuffer asCharBuffer()
+		{
+			if(buffer instanceof CharBuffer && ((CharBuffer)buffer).hasArray())
+			{
+				CharBuffer cb = (CharBuffer)buffer;
+				return CharBuffer.wrap(cb.array(), cb.arrayOffset() + start, length).slice().asReadOnlyBuffer();
+			}
+
+			return CharBuffer.wrap(buffer, start, start + length).slice();
+		}
+	}
+}
@@ -0,0 +1,91 @@
+package texteditor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// DESCRIPTION : Delivers the callbacks of one plug-in (or script) off the FX thread : they run one at a time, in the
+//               order the events happened, on a pooled thread, so a slow plug-in only delays its own callbacks and
+//               never the editor. The API marshals the changes a callback makes back to the FX thread. A plug-in
+//               that needs its callbacks on the FX thread (e.g. to keep some state in step with the document) can
+//               ask for synchronous delivery instead.
+public class PluginExecutor implements Executor
+{
+	// CLASS FIELDS :
+	private static final ExecutorService pool 	= Executors.newCachedThreadPool(runnable ->
+	{
+		Thread thread = new Thread(runnable, "plugin-callbacks");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private ArrayDeque<Runnable> queue 			= new ArrayDeque<>();
+	private boolean isDraining 					= false;
+	private volatile boolean isSynchronous 		= false;
+
+	// DESCRIPTION : Runs the callbacks on the calling (FX) thread from now on, or off it again :
+	public void setSynchronous(boolean isSynchronous)
+	{
+		this.isSynchronous = isSynchronous;
+	}
+
+	// DESCRIPTION : Queues a callback after the ones not delivered yet (or runs it straight away if synchronous) :
+	@Override
+	public void execute(Runnable callback)
+	{
+		if(isSynchronous)
+		{
+			deliver(callback);
+			return;
+		}
+
+		synchronized(queue)
+		{
+			queue.addLast(callback);
+
+			if(isDraining)
+			{
+				return;
+			}
+
+			isDraining = true;
+		}
+
+		pool.execute(this::drain);
+	}
+
+	// DESCRIPTION : Delivers the queued callbacks until there are none left (only one thread drains the queue at a time) :
+	private void drain()
+	{
+		while(true)
+		{
+			Runnable callback = null;
+
+			synchronized(queue)
+			{
+				if((callback = queue.pollFirst()) == null)
+				{
+					isDraining = false;
+					return;
+				}
+			}
+
+			deliver(callback);
+		}
+	}
+
+	// DESCRIPTION : Runs a callback, reporting its errors like an error on the FX thread (the next callbacks still run) :
+	private static void deliver(Runnable callback)
+	{
+		try
+		{
+			callback.run();
+		}
+		catch(RuntimeException | LinkageError e)
+		{
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+		}
+	}
+}
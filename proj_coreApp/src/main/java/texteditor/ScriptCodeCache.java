@@ -0,0 +1,116 @@
+package texteditor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.python.Version;
+import org.python.core.BytecodeLoader;
+import org.python.core.PyCode;
+import org.python.core.imp;
+
+// DESCRIPTION : Cache of compiled Python scripts, keyed by the SHA-256 of the script source and the Jython
+//               version. Compiled code is kept in memory for the session and its bytecode is written to a
+//               cache directory, so re-running a script (even after restarting the editor) skips parsing and
+//               compiling it.
+public class ScriptCodeCache
+{
+	// CLASS FIELDS :
+	private ConcurrentHashMap<String, PyCode> memoryCache 	= new ConcurrentHashMap<>();
+	private Path cacheDir 									= null;
+
+	// CONSTRUCTOR :
+	public ScriptCodeCache(Path cacheDir)
+	{
+		this.cacheDir = cacheDir;
+	}
+
+	// DESCRIPTION : Returns the compiled code of a script, compiling it only if it is in neither cache :
+	public PyCode getCode(String script, String fileName)
+	{
+		String key 	= hashOf(script);
+		PyCode code = memoryCache.get(key);
+
+		if(code == null)
+		{
+			code = loadOrCompile(key, script, fileName);
+			memoryCache.put(key, code);
+		}
+
+		return code;
+	}
+
+	// DESCRIPTION : Loads the bytecode from the disk cache, or compiles the script and stores its bytecode :
+	private PyCode loadOrCompile(String key, String script, String fileName)
+	{
+		// Declare variables :
+		String className 	= "script_" + key.substring(0, 16);
+		Path cacheFile 		= cacheDir.resolve(key + ".class");
+		byte[] bytecode 	= null;
+
+		if(Files.isRegularFile(cacheFile))
+		{
+			try
+			{
+				bytecode = Files.readAllBytes(cacheFile);
+				return BytecodeLoader.makeCode(className + "$py", bytecode, fileName);
+			}
+			catch(IOException | RuntimeException | LinkageError e)
+			{
+				// Unreadable or stale entry, compile it again...
+			}
+		}
+
+		bytecode = imp.compileSource(className, new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), fileName);
+
+		// The disk cache is only an optimisation, failing to write it is not an error :
+		try
+		{
+			Files.createDirectories(cacheDir);
+
+			Path tempFile = Files.createTempFile(cacheDir, key, ".tmp");
+			Files.write(tempFile, bytecode);
+			Files.move(tempFile, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+		catch(IOException e)
+		{
+			// Do nothing...
+		}
+
+		// (the compiler names the generated class after the module, with a "$py" suffix)
+		return BytecodeLoader.makeCode(className + "$py", bytecode, fileName);
+	}
+
+	// DESCRIPTION : Hashes the script together with the Jython version (bytecode differs between versions) :
+	private static String hashOf(String script)
+	{
+		try
+		{
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+			digest.update(Version.PY_VERSION.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+			digest.update(script.getBytes(StandardCharsets.UTF_8));
+
+			StringBuilder hex = new StringBuilder();
+
+			for(byte b : digest.digest())
+			{
+				hex.append(String.format("%02x", b));
+			}
+
+			return hex.toString();
+		}
+		catch(NoSuchAlgorithmException e)
+		{
+			// Every JVM has to provide SHA-256 :
+			throw new IllegalStateException(e);
+		}
+	}
+}
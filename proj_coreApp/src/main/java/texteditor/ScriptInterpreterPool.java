@@ -0,0 +1,117 @@
+package texteditor;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.python.core.PyStringMap;
+import org.python.util.PythonInterpreter;
+
+// DESCRIPTION : Small pool of Jython interpreters that are created (and the Jython runtime bootstrapped) on a
+//               background thread at startup. Scripts are run on the pool's own threads, never on the FX
+//               thread, each one in a fresh namespace so the interpreters can be reused between scripts.
+//               Scripts are compiled through a ScriptCodeCache, so running the same script again skips compiling.
+//               If no interpreter is ready in time (or warming up failed) a script creates its own, so an error
+//               creating it is reported like a script error instead of leaving the script waiting forever.
+public class ScriptInterpreterPool
+{
+	// CLASS FIELDS :
+	private static final int POOL_SIZE 						= 2;
+	private static final long WARM_UP_TIMEOUT_SECONDS 		= 30;
+
+	private LinkedBlockingQueue<PythonInterpreter> idle 	= new LinkedBlockingQueue<>();
+	private ExecutorService executor 						= null;
+	private ScriptCodeCache codeCache 						= null;
+	private volatile boolean isWarmUpFailed 				= false;
+
+	// CONSTRUCTOR :
+	public ScriptInterpreterPool(ScriptCodeCache codeCache)
+	{
+		this.codeCache = codeCache;
+
+		executor = Executors.newFixedThreadPool(POOL_SIZE, runnable ->
+		{
+			Thread thread = new Thread(runnable, "script-runner");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	// DESCRIPTION : Starts creating the interpreters in the background (the first one pays for the Jython bootstrap) :
+	public void warmUp()
+	{
+		for(int i = 0; i < POOL_SIZE; i++)
+		{
+			executor.submit(() ->
+			{
+				try
+				{
+					idle.add(createInterpreter());
+				}
+				catch(RuntimeException | LinkageError e)
+				{
+					// The scripts create their interpreter themselves then (and report the error if it fails again) :
+					isWarmUpFailed = true;
+				}
+			});
+		}
+	}
+
+	// DESCRIPTION : Runs a script on a pooled interpreter with the given variables bound in its namespace. Script
+	//               errors are passed to onError (on the script thread).
+	public void exec(String script, String fileName, Map<String, Object> bindings, Consumer<Throwable> onError)
+	{
+		executor.submit(() ->
+		{
+			PythonInterpreter interpreter = null;
+
+			try
+			{
+				// Wait for a warmed up interpreter (not if warming up failed, it would never come) :
+				interpreter = isWarmUpFailed ? idle.poll() : idle.poll(WARM_UP_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+				if(interpreter == null)
+				{
+					interpreter = createInterpreter();
+				}
+
+				// Give the script its own namespace (its functions keep it as their globals) :
+				interpreter.setLocals(new PyStringMap());
+				interpreter.set("__name__", "__main__");
+
+				for(Map.Entry<String, Object> binding : bindings.entrySet())
+				{
+					interpreter.set(binding.getKey(), binding.getValue());
+				}
+
+				interpreter.exec(codeCache.getCode(script, fileName));
+			}
+			catch(InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+			catch(RuntimeException | LinkageError e)
+			{
+				onError.accept(e);
+			}
+			finally
+			{
+				if(interpreter != null)
+				{
+					idle.add(interpreter);
+				}
+			}
+		});
+	}
+
+	// DESCRIPTION : Creates an interpreter (the first one created bootstraps the Jython runtime) :
+	private static PythonInterpreter createInterpreter()
+	{
+		PythonInterpreter interpreter = new PythonInterpreter();
+		interpreter.exec("import sys");
+		return interpreter;
+	}
+}
@@ -0,0 +1,23 @@
+package texteditor;
+
+// DESCRIPTION : A single replacement of the text between two offsets, as recorded by a batch of edits :
+public class TextEdit
+{
+	// CLASS FIELDS :
+	final int start;
+	final int end;
+	final String text;
+
+	// CONSTRUCTOR :
+	public TextEdit(int start, int end, String text)
+	{
+		if(start > end)
+		{
+			throw new IllegalArgumentException("Range: [" + start + ", " + end + ")");
+		}
+
+		this.start 	= start;
+		this.end 	= end;
+		this.text 	= text;
+	}
+}
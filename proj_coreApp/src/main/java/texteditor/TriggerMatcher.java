@@ -0,0 +1,187 @@
+package texteditor;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+// DESCRIPTION : Aho-Corasick automaton over the text-change trigger strings registered by plugins/scripts.
+//               Feeding it the chars around an edit finds every trigger ending in the inserted text in a
+//               single pass, whatever the number of triggers.
+public class TriggerMatcher
+{
+	// CLASS FIELDS :
+	private char[][] keys 		= null;
+	private int[][] next 		= null;
+	private int[] fail 			= null;
+	private int[][] outputs 	= null;
+	private int maxLength 		= 0;
+
+	// CONSTRUCTOR (triggers are identified by their index in the list) :
+	public TriggerMatcher(List<String> triggers)
+	{
+		// Declare variables :
+		ArrayList<TreeMap<Character, Integer>> trie 	= new ArrayList<>();
+		ArrayList<ArrayList<Integer>> patternIds 		= new ArrayList<>();
+
+		trie.add(new TreeMap<>());
+		patternIds.add(new ArrayList<>());
+
+		// STEP 1 : Build the trie of all triggers :
+		for(int id = 0; id < triggers.size(); id++)
+		{
+			String trigger 	= triggers.get(id);
+			int node 		= 0;
+
+			// An empty trigger would match after every char (it never matched anything before) :
+			if(trigger.isEmpty())
+			{
+				continue;
+			}
+
+			for(int i = 0; i < trigger.length(); i++)
+			{
+				Integer child = trie.get(node).get(trigger.charAt(i));
+
+				if(child == null)
+				{
+					child = trie.size();
+					trie.get(node).put(trigger.charAt(i), child);
+					trie.add(new TreeMap<>());
+					patternIds.add(new ArrayList<>());
+				}
+
+				node = child;
+			}
+
+			patternIds.get(node).add(id);
+			maxLength = Math.max(maxLength, trigger.length());
+		}
+
+		// STEP 2 : Flatten the trie into sorted arrays (binary searched when matching) :
+		int nodeCount 	= trie.size();
+		keys 			= new char[nodeCount][];
+		next 			= new int[nodeCount][];
+		fail 			= new int[nodeCount];
+		outputs 		= new int[nodeCount][];
+
+		for(int node = 0; node < nodeCount; node++)
+		{
+			TreeMap<Character, Integer> children 	= trie.get(node);
+			int i 									= 0;
+
+			keys[node] = new char[children.size()];
+			next[node] = new int[children.size()];
+
+			for(var child : children.entrySet())
+			{
+				keys[node][i] = child.getKey();
+				next[node][i] = child.getValue();
+				i++;
+			}
+		}
+
+		// STEP 3 : Breadth-first pass to set the failure links and merge the outputs of each suffix :
+		ArrayDeque<Integer> queue = new ArrayDeque<>();
+
+		outputs[0] = toArray(patternIds.get(0));
+
+		for(int child : next[0])
+		{
+			fail[child] = 0;
+			queue.add(child);
+		}
+
+		while(!queue.isEmpty())
+		{
+			int node = queue.poll();
+
+			outputs[node] = merge(patternIds.get(node), outputs[fail[node]]);
+
+			for(int i = 0; i < keys[node].length; i++)
+			{
+				int child 	= next[node][i];
+				int state 	= fail[node];
+
+				while(state != 0 && goTo(state, keys[node][i]) == -1)
+				{
+					state = fail[state];
+				}
+
+				int target 	= goTo(state, keys[node][i]);
+				fail[child] = (target == -1) ? 0 : target;
+
+				queue.add(child);
+			}
+		}
+	}
+
+	// DESCRIPTION : Returns the length of the longest trigger (how much text before an edit can take part in a match) :
+	public int getMaxLength()
+	{
+		return maxLength;
+	}
+
+	// DESCRIPTION : Returns true when no trigger is registered :
+	public boolean isEmpty()
+	{
+		return maxLength == 0 && outputs[0].length == 0;
+	}
+
+	// DESCRIPTION : Runs the automaton over text[start, end) and returns the ids of the triggers whose match ends
+	//               after reportFrom (the chars before it are only fed to get the automaton in the right state),
+	//               each mapped to the offset just after its last match.
+	public TreeMap<Integer, Integer> findMatches(CharSequence text, int start, int end, int reportFrom)
+	{
+		TreeMap<Integer, Integer> found 	= new TreeMap<>();
+		int state 							= 0;
+
+		for(int i = start; i < end; i++)
+		{
+			char c = text.charAt(i);
+
+			while(state != 0 && goTo(state, c) == -1)
+			{
+				state = fail[state];
+			}
+
+			state = Math.max(goTo(state, c), 0);
+
+			if(i >= reportFrom)
+			{
+				for(int id : outputs[state])
+				{
+					found.put(id, i + 1);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	// DESCRIPTION : Follows the trie edge for the char, or returns -1 :
+	private int goTo(int node, char c)
+	{
+		int i = Arrays.binarySearch(keys[node], c);
+
+		return (i < 0) ? -1 : next[node][i];
+	}
+
+	private static int[] merge(List<Integer> own, int[] inherited)
+	{
+		int[] merged = Arrays.copyOf(inherited, inherited.length + own.size());
+
+		for(int i = 0; i < own.size(); i++)
+		{
+			merged[inherited.length + i] = own.get(i);
+		}
+
+		return merged;
+	}
+
+	private static int[] toArray(List<Integer> list)
+	{
+		return merge(list, new int[0]);
+	}
+}
@@ -0,0 +1,518 @@
+package texteditor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// DESCRIPTION : Undo/redo history of a document. A step is a list of compact edit records (offset, removed text,
+//               inserted text) rather than a copy of the text, and consecutive typing (or deleting) is merged into
+//               one record, built up in a TypingRun until the step is sealed. The history is bounded by bytes :
+//               past MEMORY_LIMIT the oldest steps are written to a temp file and read back only if the user undoes
+//               that far, and past DISK_LIMIT the oldest steps are dropped.
+public class UndoManager
+{
+	// CLASS FIELDS :
+	private static final long MEMORY_LIMIT 		= 16L * 1024 * 1024;
+	private static final long DISK_LIMIT 		= 256L * 1024 * 1024;
+	private static final int EDIT_OVERHEAD 		= 32;
+
+	private ArrayDeque<Step> spilledSteps 		= new ArrayDeque<>();
+	private ArrayDeque<Step> undoSteps 			= new ArrayDeque<>();
+	private ArrayDeque<Step> redoSteps 			= new ArrayDeque<>();
+	private long memoryBytes 					= 0;
+	private long spilledBytes 					= 0;
+	private TypingRun run 						= null;
+	private Path spillPath 						= null;
+	private RandomAccessFile spillFile 			= null;
+
+	// DESCRIPTION : Records a single edit, merging it into the last step if it continues the typing (or deleting)
+	//               of that step :
+	public void recordEdit(int offset, String removedTxt, String insertedTxt)
+	{
+		if(removedTxt.isEmpty() && insertedTxt.isEmpty())
+		{
+			return;
+		}
+
+		clearRedo();
+
+		if(run != null && run.append(offset, removedTxt, insertedTxt))
+		{
+			// (a new line ends the step)
+			if(insertedTxt.equals("\n"))
+			{
+				sealStep();
+			}
+
+			return;
+		}
+
+		sealStep();
+
+		if(removedTxt.length() + insertedTxt.length() == 1 && !insertedTxt.equals("\n"))
+		{
+			run = new TypingRun(offset, removedTxt, insertedTxt);
+		}
+		else
+		{
+			push(new Step(Collections.singletonList(new Edit(offset, removedTxt, insertedTxt))));
+		}
+	}
+
+	// DESCRIPTION : Records a batch of edits (sorted, non-overlapping, offsets in the text before the batch) as one step :
+	public void recordBatch(List<Edit> edits)
+	{
+		if(edits.isEmpty())
+		{
+			return;
+		}
+
+		clearRedo();
+		sealStep();
+		push(new Step(new ArrayList<>(edits)));
+	}
+
+	// DESCRIPTION : Ends the current step, so the next edit isn't merged into it (e.g. after the caret moved) :
+	public void sealStep()
+	{
+		if(run != null)
+		{
+			Edit edit = run.toEdit();
+
+			run = null;
+			push(new Step(Collections.singletonList(edit)));
+		}
+	}
+
+	// DESCRIPTION : Returns the edits of the last step (to be reverted by the caller), or null if there is nothing to undo :
+	public List<Edit> undo()
+	{
+		sealStep();
+
+		Step step = undoSteps.pollLast();
+
+		if(step != null)
+		{
+			memoryBytes -= step.bytes;
+		}
+		else if((step = loadLastSpilled()) == null)
+		{
+			return null;
+		}
+
+		redoSteps.addLast(step);
+		memoryBytes += step.bytes;
+
+		return step.edits;
+	}
+
+	// DESCRIPTION : Returns the edits of the last undone step (to be applied again by the caller), or null :
+	public List<Edit> redo()
+	{
+		sealStep();
+
+		Step step = redoSteps.pollLast();
+
+		if(step == null)
+		{
+			return null;
+		}
+
+		memoryBytes -= step.bytes;
+		push(step);
+
+		return step.edits;
+	}
+
+	public boolean canUndo()
+	{
+		return run != null || !undoSteps.isEmpty() || !spilledSteps.isEmpty();
+	}
+
+	public boolean canRedo()
+	{
+		return !redoSteps.isEmpty();
+	}
+
+	// DESCRIPTION : Forgets the whole history (a new document was loaded) :
+	public void clear()
+	{
+		undoSteps.clear();
+		redoSteps.clear();
+		spilledSteps.clear();
+		memoryBytes 	= 0;
+		spilledBytes 	= 0;
+		run 			= null;
+		truncateSpillFile(0);
+	}
+
+	// DESCRIPTION : Forgets the history and deletes its temp file :
+	public void close()
+	{
+		clear();
+
+		try
+		{
+			if(spillFile != null)
+			{
+				spillFile.close();
+				Files.deleteIfExists(spillPath);
+			}
+		}
+		catch(IOException e)
+		{
+			// Do nothing (the file is deleted on exit anyway)...
+		}
+
+		spillFile = null;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// MERGING :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : The record of the typing (or deleting) going on, built up char by char : typed chars are appended,
+	//               chars deleted with Delete are appended after the removed text, and chars deleted with Backspace
+	//               are appended in reverse before it (so no char is copied twice however long the run is).
+	private static final class TypingRun
+	{
+		// CLASS FIELDS :
+		int offset 							= 0;
+		StringBuilder removedBefore 		= new StringBuilder();
+		StringBuilder removedAfter 			= new StringBuilder();
+		StringBuilder inserted 				= new StringBuilder();
+
+		// CONSTRUCTOR :
+		TypingRun(int offset, String removedTxt, String insertedTxt)
+		{
+			this.offset = offset;
+			removedAfter.append(removedTxt);
+			inserted.append(insertedTxt);
+		}
+
+		// DESCRIPTION : Adds a one char edit to the run, or returns false if it doesn't chain (a char typed right after
+		//               the text typed, or a char deleted right before/after the text deleted) :
+		boolean append(int editOffset, String removedTxt, String insertedTxt)
+		{
+			// Typing :
+			if(removedTxt.isEmpty() && insertedTxt.length() == 1 && editOffset == offset + inserted.length())
+			{
+				inserted.append(insertedTxt);
+				return true;
+			}
+
+			if(insertedTxt.isEmpty() && removedTxt.length() == 1 && inserted.length() == 0)
+			{
+				// Backspace :
+				if(editOffset + 1 == offset)
+				{
+					removedBefore.append(removedTxt);
+					offset = editOffset;
+					return true;
+				}
+
+				// Delete :
+				if(editOffset == offset)
+				{
+					removedAfter.append(removedTxt);
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		// DESCRIPTION : Returns the record of the whole run :
+		Edit toEdit()
+		{
+			char[] removed 	= new char[removedBefore.length() + removedAfter.length()];
+			int count 		= removedBefore.length();
+
+			// (reversed char by char : StringBuilder.reverse() keeps surrogate pairs together, which would scramble them here)
+			for(int i = 0; i < count; i++)
+			{
+				removed[i] = removedBefore.charAt(count - 1 - i);
+			}
+
+			removedAfter.getChars(0, removedAfter.length(), removed, count);
+
+			return new Edit(offset, new String(removed), inserted.toString());
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// MEMORY LIMIT :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	private void push(Step step)
+	{
+		undoSteps.addLast(step);
+		memoryBytes += step.bytes;
+
+		// Move the oldest steps to the temp file until the history fits in memory again :
+		while(memoryBytes > MEMORY_LIMIT && !undoSteps.isEmpty())
+		{
+			Step oldest = undoSteps.pollFirst();
+			memoryBytes -= oldest.bytes;
+			spill(oldest);
+		}
+	}
+
+	private void clearRedo()
+	{
+		for(Step step : redoSteps)
+		{
+			memoryBytes -= step.bytes;
+		}
+
+		redoSteps.clear();
+	}
+
+	// DESCRIPTION : Writes a step at the end of the temp file, dropping the oldest steps written before if the file
+	//               grows past DISK_LIMIT (a step that can't be written is dropped along with the older ones) :
+	private void spill(Step step)
+	{
+		try
+		{
+			if(step.bytes > DISK_LIMIT)
+			{
+				throw new IOException("Step too large");
+			}
+
+			while(!spilledSteps.isEmpty() && spilledBytes + step.bytes > DISK_LIMIT)
+			{
+				spilledBytes -= spilledSteps.pollFirst().bytes;
+			}
+
+			compactSpillFile();
+
+			byte[] data 	= step.toBytes();
+			long position 	= spillFile.length();
+
+			spillFile.seek(position);
+			spillFile.write(data);
+
+			spilledSteps.addLast(new Step(position, data.length, step.bytes));
+			spilledBytes += step.bytes;
+		}
+		catch(IOException e)
+		{
+			// Undoing past this step would skip it, so forget everything older :
+			spilledSteps.clear();
+			spilledBytes = 0;
+			truncateSpillFile(0);
+		}
+	}
+
+	// DESCRIPTION : Reads back the newest step written to the temp file (and cuts it off the file) :
+	private Step loadLastSpilled()
+	{
+		Step spilled = spilledSteps.pollLast();
+
+		if(spilled == null)
+		{
+			return null;
+		}
+
+		spilledBytes -= spilled.bytes;
+
+		try
+		{
+			byte[] data = new byte[spilled.fileLength];
+
+			spillFile.seek(spilled.filePosition);
+			spillFile.readFully(data);
+			truncateSpillFile(spilled.filePosition);
+
+			return Step.fromBytes(data);
+		}
+		catch(IOException e)
+		{
+			spilledSteps.clear();
+			spilledBytes = 0;
+			truncateSpillFile(0);
+			return null;
+		}
+	}
+
+	// DESCRIPTION : Opens the temp file, and moves the steps still in it to its start once the dropped steps before
+	//               them take more room than they do :
+	private void compactSpillFile() throws IOException
+	{
+		if(spillFile == null)
+		{
+			spillPath = Files.createTempFile("texteditor-undo", ".tmp");
+			spillPath.toFile().deleteOnExit();
+			spillFile = new RandomAccessFile(spillPath.toFile(), "rw");
+			return;
+		}
+
+		long deadBytes 	= spilledSteps.isEmpty() ? spillFile.length() : spilledSteps.peekFirst().filePosition;
+		long liveBytes 	= spillFile.length() - deadBytes;
+
+		if(deadBytes == 0 || deadBytes < liveBytes)
+		{
+			return;
+		}
+
+		byte[] buffer = new byte[64 * 1024];
+
+		for(long read = 0; read < liveBytes; )
+		{
+			int count = (int)Math.min(buffer.length, liveBytes - read);
+
+			spillFile.seek(deadBytes + read);
+			spillFile.readFully(buffer, 0, count);
+			spillFile.seek(read);
+			spillFile.write(buffer, 0, count);
+			read += count;
+		}
+
+		spillFile.setLength(liveBytes);
+
+		ArrayDeque<Step> moved = new ArrayDeque<>(spilledSteps.size());
+
+		for(Step spilled : spilledSteps)
+		{
+			moved.addLast(new Step(spilled.filePosition - deadBytes, spilled.fileLength, spilled.bytes));
+		}
+
+		spilledSteps = moved;
+	}
+
+	private void truncateSpillFile(long length)
+	{
+		try
+		{
+			if(spillFile != null)
+			{
+				spillFile.setLength(length);
+			}
+		}
+		catch(IOException e)
+		{
+			// Do nothing (the dropped data is never read again)...
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// EDIT :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : The text removedTxt at offset was replaced by insertedTxt :
+	public static final class Edit
+	{
+		// CLASS FIELDS :
+		final int offset;
+		final String removedTxt;
+		final String insertedTxt;
+
+		// CONSTRUCTOR :
+		public Edit(int offset, String removedTxt, String insertedTxt)
+		{
+			this.offset 		= offset;
+			this.removedTxt 	= removedTxt;
+			this.insertedTxt 	= insertedTxt;
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// STEP :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DESCRIPTION : One undo step, either in memory (its edits) or in the temp file (where it was written) :
+	private static final class Step
+	{
+		// CLASS FIELDS :
+		final List<Edit> edits;
+		final long filePosition;
+		final int fileLength;
+		final long bytes;
+
+		// CONSTRUCTOR :
+		Step(List<Edit> edits)
+		{
+			long size = 0;
+
+			for(Edit edit : edits)
+			{
+				size += 2L * (edit.removedTxt.length() + edit.insertedTxt.length()) + EDIT_OVERHEAD;
+			}
+
+			this.edits 			= edits;
+			this.filePosition 	= -1;
+			this.fileLength 	= 0;
+			this.bytes 			= size;
+		}
+
+		Step(long filePosition, int fileLength, long bytes)
+		{
+			this.edits 			= null;
+			this.filePosition 	= filePosition;
+			this.fileLength 	= fileLength;
+			this.bytes 			= bytes;
+		}
+
+		byte[] toBytes() throws IOException
+		{
+			ByteArrayOutputStream bytesOut 	= new ByteArrayOutputStream((int)Math.min(bytes, Integer.MAX_VALUE - 8));
+			DataOutputStream out 			= new DataOutputStream(bytesOut);
+
+			out.writeInt(edits.size());
+
+			for(Edit edit : edits)
+			{
+				out.writeInt(edit.offset);
+				writeString(out, edit.removedTxt);
+				writeString(out, edit.insertedTxt);
+			}
+
+			out.flush();
+			return bytesOut.toByteArray();
+		}
+
+		static Step fromBytes(byte[] data) throws IOException
+		{
+			DataInputStream in 		= new DataInputStream(new ByteArrayInputStream(data));
+			int count 				= in.readInt();
+			ArrayList<Edit> edits 	= new ArrayList<>(count);
+
+			for(int i = 0; i < count; i++)
+			{
+				edits.add(new Edit(in.readInt(), readString(in), readString(in)));
+			}
+
+			return new Step(edits);
+		}
+
+		// (writeUTF is limited to 64KB)
+		private static void writeString(DataOutputStream out, String text) throws IOException
+		{
+			out.writeInt(text.length());
+			out.writeChars(text);
+		}
+
+		private static String readString(DataInputStream in) throws IOException
+		{
+			char[] chars = new char[in.readInt()];
+
+			for(int i = 0; i < chars.length; i++)
+			{
+				chars[i] = in.readChar();
+			}
+
+			return new String(chars);
+		}
+	}
+}
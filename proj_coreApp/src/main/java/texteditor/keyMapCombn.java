@@ -1,6 +1,5 @@
 package texteditor;
 
-import javafx.scene.control.TextArea;
 import javafx.scene.input.KeyCode;
 
 public class keyMapCombn 
@@ -17,10 +16,10 @@ public class keyMapCombn
 	boolean isCtrlPressed 	= false;
 	boolean isShiftPressed 	= false;
 	KeyCode code			= null;	
-	TextArea textArea		= null;
+	EditorTextArea textArea	= null;
 	
 	// CONSTRUCTOR :
-	public keyMapCombn(Token str, Token alt, Token ctrl, Token shift, Token vName, String insPos, Token task, TextArea textArea)
+	public keyMapCombn(Token str, Token alt, Token ctrl, Token shift, Token vName, String insPos, Token task, EditorTextArea textArea)
 	{
 		this.strToInsert 	= str.image.substring(1, str.image.length()-1);
 		this.alt 			= alt.image;
@@ -36,29 +35,32 @@ public class keyMapCombn
 		this.textArea		= textArea;
 	}
 	
-	// DESCRIPTION : Triggers the relevant method based on which key modifier combination is pressed :
-	public void runKeyCombination(KeyCode key, boolean ctrl, boolean shift, boolean alt )
-	{		
-		if((isAltPressed == alt) && (isCtrlPressed == ctrl) && (isShiftPressed == shift) && (key == code))
-		{			
-			switch(task+insPos)
-			{
-				case "insert"+"@start":
-					insertTextAtStart();
-				break;
-				
-				case "insert"+"@caret":
-					insertTextAtCaret();
-				break;
-				
-				case "delete"+"@start":
-					deleteTextAtStart();
-				break;
-				
-				case "delete"+"@caret":
-					deleteTextAtCaret();
-				break;
-			}
+	// DESCRIPTION : Binds the task of this key combination in the dispatch table :
+	public void addTo(KeyDispatchTable dispatchTable)
+	{
+		dispatchTable.add(code, isCtrlPressed, isShiftPressed, isAltPressed, this::runTask);
+	}
+	
+	// DESCRIPTION : Runs the task (insert/delete at start of line/caret) of this key combination :
+	public void runTask()
+	{
+		switch(task+insPos)
+		{
+			case "insert"+"@start":
+				insertTextAtStart();
+			break;
+			
+			case "insert"+"@caret":
+				insertTextAtCaret();
+			break;
+			
+			case "delete"+"@start":
+				deleteTextAtStart();
+			break;
+			
+			case "delete"+"@caret":
+				deleteTextAtCaret();
+			break;
 		}
 	}
 		
@@ -67,22 +69,9 @@ public class keyMapCombn
 	{
 		// Declare variables :
 		int caretIdx 			= textArea.getCaretPosition();
-		boolean notFoundInx 	= true;
-		int idx 				= caretIdx;
 		
-		// Scan each char unit \n is found and get its index :
-		while(idx > 0 && notFoundInx)
-		{			
-			if(idx>=0 && textArea.getText().charAt(idx-1) == '\n')
-			{
-				// Use beginning of line :
-				notFoundInx = false;
-			}
-			else
-			{
-				idx--;
-			}			
-		}
+		// Look up the beginning of the line in the line index :
+		int idx 				= textArea.getLineIndex().getLineStartOfOffset(caretIdx);
 		
 		// Insert str at index + move caret ahead :
 		textArea.insertText(idx, strToInsert);
@@ -103,28 +92,15 @@ public class keyMapCombn
 	{
 		// Declare variables :
 		int caretIdx 			= textArea.getCaretPosition();
-		boolean notFoundInx 	= true;
-		int idx 				= caretIdx;	
 		
-		// Scan each char unit \n is found and get its index :
-		while(idx > 0 && notFoundInx)
-		{			
-			if(idx >= 0 && textArea.getText().charAt(idx - 1) == '\n')
-			{
-				// Use beginning of line :
-				notFoundInx = false;
-			}
-			else
-			{
-				idx--;
-			}			
-		}
+		// Look up the beginning of the line in the line index :
+		int idx 				= textArea.getLineIndex().getLineStartOfOffset(caretIdx);
 		
 		// Check if end index is not out of range :
-		if((idx + strToInsert.length()) <= (textArea.getText().length()))
+		if((idx + strToInsert.length()) <= (textArea.getLength()))
 		{
 			// Delete str at index + move caret back :
-			if(textArea.getText().substring(idx, idx + strToInsert.length()).equals(strToInsert))
+			if(textArea.getDocument().getText(idx, idx + strToInsert.length()).equals(strToInsert))
 			{
 				textArea.deleteText(idx, idx+strToInsert.length());				
 				textArea.positionCaret(caretIdx - strToInsert.length());
@@ -141,7 +117,7 @@ public class keyMapCombn
 		if(caretIdx - strToInsert.length() >= 0)
 		{
 			// Delete str at index + move caret back :
-			if(textArea.getText().substring(caretIdx - strToInsert.length(), caretIdx).equals(strToInsert))
+			if(textArea.getDocument().getText(caretIdx - strToInsert.length(), caretIdx).equals(strToInsert))
 			{
 				textArea.deleteText(caretIdx - strToInsert.length(), caretIdx);
 			}
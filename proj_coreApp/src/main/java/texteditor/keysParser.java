@@ -5,7 +5,6 @@ import java.nio.charset.*;
 import java.nio.file.*;
 import java.io.*;
 import java.util.ArrayList;
-import javafx.scene.control.TextArea;
 
 public class keysParser implements keysParserConstants 
 {
@@ -18,7 +17,7 @@ public class keysParser implements keysParserConstants
                 String keymapFile       = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
                 keysParser parser       = new keysParser(new java.io.StringReader(keymapFile));
 
-                TextArea txtArea        = null;
+                EditorTextArea txtArea        = null;
                 ArrayList<keyMapCombn> keyCombsList = parser.Input(txtArea);
 
                 for(keyMapCombn a : keyCombsList)
@@ -42,7 +41,7 @@ public class keysParser implements keysParserConstants
   }
 
 /** Top level production. */
-  final public ArrayList<keyMapCombn> Input(TextArea txtArea) throws ParseException {
+  final public ArrayList<keyMapCombn> Input(EditorTextArea txtArea) throws ParseException {
         Token task              = new Token();
         Token str               = new Token();
         Token alt               = new Token();
@@ -52,7 +51,7 @@ public class keysParser implements keysParserConstants
         String insPos   = null;
 
         ArrayList<keyMapCombn> keyCombsList = new ArrayList<keyMapCombn>();
-        TextArea textArea = null;
+        EditorTextArea textArea = null;
     label_1:
     while (true) {
       switch ((jj_ntk==-1)?jj_ntk():jj_ntk) {
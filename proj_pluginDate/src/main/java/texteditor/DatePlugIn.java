@@ -52,20 +52,15 @@ public class DatePlugIn implements TextEditorPlugIn
 	{
 		// Declare variables :
 		int caretIndx 					= 0;
-		String editorTxt 				= null;
 		Locale locale					= null;
 		LocalDateTime localDateTime 	= null;
 		ZonedDateTime zonedDateTime 	= null;
 		DateTimeFormatter dateFormater 	= null;
 		String formattedDate			= null;
-		String newStr 					= null;
 				
 		// Get Caret index :
 		caretIndx = api.getCaretPosition();
 		
-		// Get text from editor :
-		editorTxt = api.getText();
-		
 		// Get date and time for locale :
 		locale			= api.getLocale();    	
     	localDateTime 	= LocalDateTime.now();
@@ -76,8 +71,7 @@ public class DatePlugIn implements TextEditorPlugIn
     	formattedDate = dateFormater.format(zonedDateTime);		    	
     	
     	// Insert date in editor's text :
-    	newStr = new StringBuilder(editorTxt).insert(caretIndx, formattedDate).toString();
-		api.setText(newStr);	
+		api.insertText(caretIndx, formattedDate);	
 		
 		// Place caret back :
 		api.setCaretPosition(caretIndx);
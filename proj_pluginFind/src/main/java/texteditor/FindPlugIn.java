@@ -1,12 +1,30 @@
 package texteditor;
 
-import java.text.Normalizer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.regex.PatternSyntaxException;
 
 public class FindPlugIn implements TextEditorPlugIn
 {
 	// CLASS FIELDS :
-	private API api = null;
+	private API api 											= null;
+	private SearchIndex searchIndex 							= new SearchIndex();
+	private volatile List<SearchIndex.Match> allMatches 		= new ArrayList<>();
+	private Future<?> pendingSearch 							= null;
+	private long indexVersion 									= 0;
+	private long snapshotVersion 								= 0;
+	private ExecutorService searchExecutor 						= Executors.newSingleThreadExecutor(runnable -> 
+	{
+		Thread thread = new Thread(runnable, "find-regex");
+		thread.setDaemon(true);
+		return thread;
+	});
 	
 	// PLUGIN CONSTRUCTOR :
 	public FindPlugIn() 
@@ -23,10 +41,16 @@ public class FindPlugIn implements TextEditorPlugIn
 		// Add button to GUI :
 		btnPressCallbk btnPressCallbk = new btnPressCallbk();	
 		api.addButton("Find", btnPressCallbk);	
+		api.addButton("Find All", btnPressCallbk);	
+		api.addButton("Replace", btnPressCallbk);	
+		api.addButton("Replace All", btnPressCallbk);	
 		
 		FindEventCallbk fdEventCallbk = new FindEventCallbk();	
 		api.addKeyPressCallbk("F3", fdEventCallbk);
 		
+		// Keep the normalised shadow of the text in step with the edits :
+		api.addDocChangeCallbk(new DocChangedCallbk());
+		
 		api.displayInListView("Find Plug-in");
 	}
 	
@@ -45,6 +69,43 @@ public class FindPlugIn implements TextEditorPlugIn
 		}		
 	}
 	
+	// CALLBACK METHOD (DOCUMENT CHANGE) :
+	private class DocChangedCallbk implements DocChangedCallbk_Interface
+	{
+		@Override
+		public void notifyDocChangeHappened(DocChangedEvent_Interface docChangedEv)
+		{
+			// (skip an edit the index already has : it was rebuilt from a snapshot taken after it)
+			if(docChangedEv.getDocVersion() <= indexVersion)
+			{
+				return;
+			}
+			
+			indexVersion = docChangedEv.getDocVersion();
+			
+			if(docChangedEv.isDocumentReset())
+			{
+				searchIndex.documentReset();
+			}
+			else
+			{
+				searchIndex.textReplaced(docChangedEv.getOffset(), docChangedEv.getRemovedText().length(), docChangedEv.getInsertedText().length());
+			}
+		}
+	}
+	
+	// CALLBACK METHOD (RESULT SELECTED) :
+	private class ResultSelectedCallbk implements ResultSelectedCallbk_Interface
+	{
+		@Override
+		public void notifyResultSelected(ResultSelectedEvent_Interface resultSelectedEv)
+		{
+			SearchIndex.Match match = allMatches.get(resultSelectedEv.getIndex());
+			
+			api.highlightText(match.start, match.end);
+		}
+	}
+	
 	// CALLBACK METHOD (BUTTON PRESS) :
 	private class btnPressCallbk implements BtnPressCallbk_Interface
 	{
@@ -55,97 +116,385 @@ public class FindPlugIn implements TextEditorPlugIn
 			{
 				findText();
 			}
+			else if(btnPressEv.getBtnName().equals("Find All"))
+			{
+				findAllText();
+			}
+			else if(btnPressEv.getBtnName().equals("Replace"))
+			{
+				replaceText(false);
+			}
+			else if(btnPressEv.getBtnName().equals("Replace All"))
+			{
+				replaceText(true);
+			}
 		}		
 	}
 	
 	
-	// DESCRIPTION : Normalise the editor text and search text and try to find a match, then highlights it in the original text.
+	// DESCRIPTION : Normalise the search text and find its next match after the caret in the normalised shadow of the
+	//               editor text, then highlight it in the original text. A /pattern/flags search text is searched
+	//               as a regular expression instead, in the background.
 	private void findText()
 	{
-		// NOTE: Due to the expansion of normalised texts due to ligatures, an array was
-		//       made to map the index back to the original text for highlighting correctly.
-		
 		// Declare variables :
-		String strToFind 				= null;
-		String strToFind_n 				= null;
-		String txt						= null;
-		String subTxt					= null;
-		String subTxt_n					= null;
-		int caretIndx					= 0;
-		int idx 						= 0;
-		int totOffset 					= 0;
-		int offset 						= 0;
-		int startIdx					= 0;			 
-		int endIdx						= 0;				
-		int expandBy					= 0;
-		ArrayList<Integer> offsetArr 	= new ArrayList<Integer>();
-		
+		String strToFind 			= null;
+		int caretIndx				= 0;
+		CharSequence txt			= null;
+		SearchIndex.Match match 	= null;
 	
 		// Prompt user for input string to find :
 		strToFind = api.showDialog();				
 		
 		if(strToFind != null)
 		{
-			// Normalise the string to find text :
-			strToFind_n = Normalizer.normalize(strToFind, Normalizer.Form.NFKC).toLowerCase();
-			
 			// Get Caret index :
-			caretIndx = api.getCaretPosition();
+			caretIndx 	= api.getCaretPosition();
+			txt 		= takeSnapshot();
 			
-			// Get text from editor and normalise it :
-			txt 		= api.getText();
-			subTxt 		= txt.substring(caretIndx, txt.length());
-			subTxt_n 	= Normalizer.normalize(subTxt, Normalizer.Form.NFKC).toLowerCase();			
+			if(RegexSearch.isRegex(strToFind))
+			{
+				String regex 			= strToFind;
+				CharSequence regexTxt 	= txt;
+				int fromIndx 			= caretIndx;
+				
+				searchInBackground(() -> highlightMatch(RegexSearch.find(regexTxt, RegexSearch.compile(regex), fromIndx)));
+				return;
+			}
 			
-			// Get search string start index, else return -1 :
-			idx = subTxt_n.indexOf(strToFind_n);						
+			// Search the text after the caret (only the parts edited since the last search are normalised again) :
+			match = searchIndex.find(txt, strToFind, caretIndx);
 			
-			// Highlight text after Caret :
-			if(idx != -1)
-			{				
-				// Scan through substring and build offsetting array :				
-				for(char c : subTxt.toCharArray())
-				{
-					// Check if char is a ligature or not :
-					offset = isLigature(c);
-					
-					// Add cummulative offset :
-					offsetArr.add(totOffset);
-					
-					while(totOffset <  totOffset+offset)
-					{
-						// Increase incrementally till offset :
-						totOffset++;						
-						offsetArr.add(totOffset);									
-						
-						// Increase until offset(count) zeroes out :
-						offset--;
-					}					
-				}
+			highlightMatch(match);
+		}
+	}
+	
+	
+	// DESCRIPTION : Find every match of the search text (the document is scanned in parallel) and list them, with
+	//               their line, in a result list, filled a chunk at a time as the scan goes. Selecting a result
+	//               highlights its match. A /pattern/flags search text is searched as a regular expression instead,
+	//               in the background.
+	private void findAllText()
+	{
+		// Declare variables :
+		String strToFind 	= null;
+		CharSequence txt	= null;
+		
+		// Prompt user for input string to find :
+		strToFind = api.showDialog();
+		
+		if(strToFind != null)
+		{
+			String title 	= "Find All : \"" + strToFind + "\"";
+			String regex 	= strToFind;
+			
+			txt = takeSnapshot();
+			
+			if(RegexSearch.isRegex(strToFind))
+			{
+				CharSequence regexTxt = txt;
 				
-				// Adjust index to highlight the original text correctly :
-				startIdx 	= idx + caretIndx - offsetArr.get(idx);				 
-				endIdx 		= idx + caretIndx - offsetArr.get(idx) + strToFind_n.length();				
-				expandBy	= offsetArr.get(idx + strToFind_n.length() - 1) - offsetArr.get(idx);
+				searchInBackground(() -> showMatches(title, regexTxt, RegexSearch.findAll(regexTxt, RegexSearch.compile(regex))));
+				return;
+			}
+			
+			MatchLister lister = new MatchLister(title, txt);
+			
+			searchIndex.findAll(txt, strToFind, lister);
+			lister.finish();
+		}
+	}
+	
+	
+	// DESCRIPTION : Replace the next match from the selection start, or every match, with a replacement text. All the
+	//               matches are found in one scan of the text and replaced in a single batch edit, so the document is
+	//               rebuilt once and the whole replacement is undone in one step. A /pattern/flags search text is
+	//               searched as a regular expression in the background (its replacement may refer to the groups).
+	private void replaceText(boolean isReplaceAll)
+	{
+		// Declare variables :
+		String strToFind 	= null;
+		String replacement 	= null;
+		int caretIndx		= 0;
+		
+		// Prompt user for the string to find and its replacement :
+		strToFind = api.showDialog();
+		
+		if(strToFind == null || (replacement = api.showDialog("Replace with :")) == null)
+		{
+			return;
+		}
+		
+		// (a match highlighted by Find is selected, with the caret at its end : search from its start to replace it)
+		caretIndx = isReplaceAll ? 0 : api.getSelectionStart();
+		
+		// (copies the lambdas can capture)
+		String findTxt 		= strToFind;
+		String replaceTxt 	= replacement;
+		int fromIndx 		= caretIndx;
+		CharSequence txt 	= takeSnapshot();
+		long version 		= snapshotVersion;
+		
+		if(RegexSearch.isRegex(strToFind))
+		{
+			searchInBackground(() -> 
+			{
+				RecordedEdits edits = new RecordedEdits();
 				
-				api.highlightText(startIdx , endIdx - expandBy);
+				RegexSearch.replace(txt, RegexSearch.compile(findTxt), replaceTxt, fromIndx, isReplaceAll, edits);
+				applyReplaced(edits, version, isReplaceAll);
+			});
+			return;
+		}
+		
+		// Declare variables :
+		RecordedEdits edits 					= new RecordedEdits();
+		ArrayList<SearchIndex.Match> matches 	= new ArrayList<>();
+		
+		if(isReplaceAll)
+		{
+			matches = searchIndex.findAll(txt, findTxt);
+		}
+		else
+		{
+			SearchIndex.Match match = searchIndex.find(txt, findTxt, fromIndx);
+			
+			if(match != null)
+			{
+				matches.add(match);
+			}
+		}
+		
+		for(SearchIndex.Match match : matches)
+		{
+			edits.replaceRange(match.start, match.end, replaceTxt);
+		}
+		
+		applyReplaced(edits, version, isReplaceAll);
+	}
+	
+	
+	// DESCRIPTION : Applies the replacements found in a snapshot in one batch edit (on the FX thread), unless the text
+	//               changed since the snapshot was taken, then highlight a single one or report how many were made :
+	private void applyReplaced(RecordedEdits edits, long version, boolean isReplaceAll)
+	{
+		api.editBatch(builder -> 
+		{
+			if(api.getDocVersion() != version)
+			{
+				api.showMessage("Nothing was replaced: the text changed during the search");
+				return;
 			}
 			
+			edits.replay(builder);
+			
+			if(isReplaceAll)
+			{
+				api.showMessage(edits.count + " occurrence(s) replaced");
+			}
+			else if(edits.count > 0)
+			{
+				api.highlightText(edits.starts[0], edits.starts[0] + edits.replacements.get(0).length());
+			}
+		});
+	}
+	
+	
+	// DESCRIPTION : Takes a snapshot of the text (its version is kept in snapshotVersion) and brings the search index
+	//               to it. The index follows the edits as their callbacks arrive, so it lags behind the text when an
+	//               edit was made since the current callback was queued (rare, the dialogs are modal) : then it is
+	//               rebuilt from the snapshot, and skips that edit when its callback arrives.
+	private CharSequence takeSnapshot()
+	{
+		// Declare variables :
+		CharSequence txt 	= null;
+		long version 		= 0;
+		
+		// (the version is read on both sides of the snapshot, so it is the snapshot's own version)
+		do
+		{
+			version = api.getDocVersion();
+			txt 	= api.getTextSnapshot();
+		}
+		while(version != api.getDocVersion());
+		
+		if(version != indexVersion)
+		{
+			searchIndex.documentReset();
+			indexVersion = version;
+		}
+		
+		snapshotVersion = version;
+		
+		return txt;
+	}
+	
+	
+	// DESCRIPTION : Highlight a match after Caret (if one was found) :
+	private void highlightMatch(SearchIndex.Match match)
+	{
+		if(match != null)
+		{
+			api.highlightText(match.start, match.end);
+		}
+	}
+	
+	
+	// DESCRIPTION : Lists the matches with their line in a result list :
+	private void showMatches(String title, CharSequence txt, ArrayList<SearchIndex.Match> matches)
+	{
+		MatchLister lister = new MatchLister(title, txt);
+		
+		lister.accept(matches);
+		lister.finish();
+	}
+	
+	
+	// DESCRIPTION : Runs a regular expression search on the search thread (cancelling the previous one if it is still
+	//               running), so a slow pattern never freezes the editor :
+	private void searchInBackground(Runnable search)
+	{
+		if(pendingSearch != null)
+		{
+			pendingSearch.cancel(true);
 		}
 		
+		pendingSearch = searchExecutor.submit(() -> 
+		{
+			try
+			{
+				search.run();
+			}
+			catch(PatternSyntaxException e)
+			{
+				api.showMessage("Invalid regular expression: " + e.getDescription());
+			}
+			catch(RegexSearch.SearchTimeoutException e)
+			{
+				// (a search cancelled by a newer one is not an error)
+				if(!Thread.currentThread().isInterrupted())
+				{
+					api.showMessage("Search stopped: the regular expression took too long");
+				}
+			}
+		});
 	}
 	
 	
-	// DESCRIPTION : Detects whether a char is a ligature and returns the increase in chars when decomposed.
-	private int isLigature(char inChar)
+	// DESCRIPTION : Returns the part of the match's line around it (cut to keep the list readable) :
+	private static String lineExcerpt(CharSequence txt, SearchIndex.Match match)
 	{
 		// Declare variables :
-		String subTxt_n = null;
+		int start 	= match.start;
+		int end 	= match.end;
+		
+		while(start > 0 && (match.start - start) < 40 && txt.charAt(start - 1) != '\n')
+		{
+			start--;
+		}
+		
+		while(end < txt.length() && (end - match.end) < 80 && txt.charAt(end) != '\n')
+		{
+			end++;
+		}
+		
+		return txt.subSequence(start, end).toString().replace('\n', ' ').replace('\t', ' ');
+	}
+	
+	
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// MATCH LISTER :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	
+	// DESCRIPTION : Opens a result list for a search, and adds the matches to it (with their line) as they are found,
+	//               so the first results show up without waiting for the end of the search :
+	private class MatchLister implements Consumer<ArrayList<SearchIndex.Match>>
+	{
+		// CLASS FIELDS :
+		private String title 						= null;
+		private CharSequence txt 					= null;
+		private List<SearchIndex.Match> matches 	= Collections.synchronizedList(new ArrayList<>());
+		private ResultList_Interface resultList 	= null;
+		
+		// CONSTRUCTOR :
+		MatchLister(String title, CharSequence txt)
+		{
+			this.title 	= title;
+			this.txt 	= txt;
+			allMatches 	= matches;
+			resultList 	= api.showResultList(title, new ResultSelectedCallbk());
+		}
+		
+		@Override
+		public void accept(ArrayList<SearchIndex.Match> found)
+		{
+			ArrayList<String> results = new ArrayList<>(found.size());
+			
+			for(SearchIndex.Match match : found)
+			{
+				results.add((match.line + 1) + ": " + lineExcerpt(txt, match));
+			}
 			
-		// Check if char is a ligature :
-		subTxt_n = Normalizer.normalize(Character.toString(inChar), Normalizer.Form.NFKC).toLowerCase();
+			// (the matches are added before their results, so a result selected always has its match)
+			matches.addAll(found);
+			resultList.addResults(results);
+		}
 		
-		return subTxt_n.length()-1;
-	}	
+		// DESCRIPTION : Shows the number of matches once they are all listed :
+		void finish()
+		{
+			resultList.setTitle(title + " (" + matches.size() + ")");
+		}
+	}
+	
+	
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// RECORDED EDITS :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
 	
-}
+	// DESCRIPTION : Edits found off the FX thread, kept until they can be replayed into a batch edit :
+	private static final class RecordedEdits implements EditBuilder_Interface
+	{
+		// CLASS FIELDS :
+		private int[] starts 						= new int[16];
+		private int[] ends 							= new int[16];
+		private ArrayList<String> replacements 		= new ArrayList<>();
+		private int count 							= 0;
+		
+		@Override
+		public void insertText(int offset, CharSequence text)
+		{
+			replaceRange(offset, offset, text);
+		}
+		
+		@Override
+		public void deleteRange(int startIndex, int endIndex)
+		{
+			replaceRange(startIndex, endIndex, "");
+		}
+		
+		@Override
+		public void replaceRange(int startIndex, int endIndex, CharSequence text)
+		{
+			if(count == starts.length)
+			{
+				starts 	= Arrays.copyOf(starts, count * 2);
+				ends 	= Arrays.copyOf(ends, count * 2);
+			}
+			
+			starts[count] 	= startIndex;
+			ends[count] 	= endIndex;
+			replacements.add(text.toString());
+			count++;
+		}
+		
+		// DESCRIPTION : Adds the recorded edits to a batch edit :
+		void replay(EditBuilder_Interface builder)
+		{
+			for(int i = 0; i < count; i++)
+			{
+				builder.replaceRange(starts[i], ends[i], replacements.get(i));
+			}
+		}
+	}
+}
\ No newline at end of file
@@ -0,0 +1,235 @@
+package texteditor;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+
+// DESCRIPTION : A text normalised for searching (NFKC + lower case) together with the map between its offsets and
+//               the original ones. The text is normalised one segment (a char and the combining marks after it) at
+//               a time, in a single pass, and Latin-1 chars not followed by a combining mark are looked up in a
+//               table instead of going through the Normalizer. The map is run-length encoded : a run where each
+//               normalised char comes from one original char is stored once whatever its length, so a mostly
+//               ASCII text needs only a handful of runs.
+public class NormalizedText
+{
+	// CLASS FIELDS :
+	private static final String[] LATIN1_NORMALIZED = new String[0x100];
+
+	private String text 		= null;
+	private int[] normStarts 	= null;
+	private int[] origStarts 	= null;
+	private int runCount 		= 0;
+
+	static
+	{
+		for(char c = 0; c < 0x100; c++)
+		{
+			LATIN1_NORMALIZED[c] = Normalizer.normalize(Character.toString(c), Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+		}
+	}
+
+	// CONSTRUCTOR :
+	private NormalizedText()
+	{
+		// Built by of()...
+	}
+
+	// DESCRIPTION : Normalises a text and maps its offsets :
+	public static NormalizedText of(CharSequence original)
+	{
+		// Declare variables :
+		NormalizedText normalized 	= new NormalizedText();
+		StringBuilder sb 			= new StringBuilder(original.length());
+		int length 					= original.length();
+		int start 					= 0;
+
+		normalized.normStarts 	= new int[8];
+		normalized.origStarts 	= new int[8];
+
+		while(start < length)
+		{
+			char c = original.charAt(start);
+
+			// FAST PATH : A Latin-1 char which can't combine with the next one (combining marks start at U+0300) :
+			if(c < 0x100 && (start + 1 == length || original.charAt(start + 1) < 0x300))
+			{
+				String segment_n = LATIN1_NORMALIZED[c];
+
+				normalized.addSegment(sb.length(), start, segment_n.length(), 1);
+				sb.append(segment_n);
+				start++;
+				continue;
+			}
+
+			// SLOW PATH : Normalise the whole segment :
+			int end = start + Character.charCount(Character.codePointAt(original, start));
+
+			while(end < length && !isSegmentStart(original, end))
+			{
+				end += Character.charCount(Character.codePointAt(original, end));
+			}
+
+			String segment_n = Normalizer.normalize(original.subSequence(start, end), Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+
+			normalized.addSegment(sb.length(), start, segment_n.length(), end - start);
+			sb.append(segment_n);
+			start = end;
+		}
+
+		// Drop the last run if nothing was added to it, then end the map (and size the arrays down to what is used) :
+		if(normalized.runCount > 0 && normalized.normStarts[normalized.runCount - 1] == sb.length())
+		{
+			normalized.runCount--;
+		}
+
+		normalized.text 		= sb.toString();
+		normalized.normStarts 	= Arrays.copyOf(normalized.normStarts, normalized.runCount + 1);
+		normalized.origStarts 	= Arrays.copyOf(normalized.origStarts, normalized.runCount + 1);
+
+		normalized.normStarts[normalized.runCount] = sb.length();
+		normalized.origStarts[normalized.runCount] = length;
+
+		return normalized;
+	}
+
+	// DESCRIPTION : Returns the normalised text :
+	public String getText()
+	{
+		return text;
+	}
+
+	// DESCRIPTION : Returns the original offset of the segment the normalised char comes from :
+	public int toOriginal(int normIndex)
+	{
+		if(normIndex >= text.length())
+		{
+			return origStarts[runCount];
+		}
+
+		int run = findRun(normStarts, normIndex);
+
+		return isOneToOne(run) ? origStarts[run] + (normIndex - normStarts[run]) : origStarts[run];
+	}
+
+	// DESCRIPTION : Returns the original offset just after the segment the normalised char before normEnd comes from
+	//               (a range ending inside a ligature's expansion covers all of the ligature) :
+	public int toOriginalEnd(int normEnd)
+	{
+		if(normEnd <= 0)
+		{
+			return 0;
+		}
+
+		int run = findRun(normStarts, normEnd - 1);
+
+		return isOneToOne(run) ? origStarts[run] + (normEnd - normStarts[run]) : origStarts[run + 1];
+	}
+
+	// DESCRIPTION : Returns the first normalised char coming from the original offset or after it :
+	public int toNormalized(int origOffset)
+	{
+		if(origOffset >= origStarts[runCount])
+		{
+			return text.length();
+		}
+
+		int run = findRun(origStarts, origOffset);
+
+		if(isOneToOne(run))
+		{
+			return normStarts[run] + (origOffset - origStarts[run]);
+		}
+
+		// Inside a segment, its normalised chars come from before the offset :
+		return (origOffset == origStarts[run]) ? normStarts[run] : normStarts[run + 1];
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// RUN HANDLING :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Adds a segment to the map. The last run is always open and one-to-one (or still empty) : a
+	//               segment normalised to as many chars as it had just extends it, any other segment gets a run of
+	//               its own, closed straight away by opening the next one.
+	private void addSegment(int normStart, int origStart, int normLen, int origLen)
+	{
+		boolean isSegOneToOne = (normLen == origLen);
+
+		if(runCount == 0 || (!isSegOneToOne && (normStarts[runCount - 1] != normStart || origStarts[runCount - 1] != origStart)))
+		{
+			addRun(normStart, origStart);
+		}
+
+		if(!isSegOneToOne)
+		{
+			addRun(normStart + normLen, origStart + origLen);
+		}
+	}
+
+	private void addRun(int normStart, int origStart)
+	{
+		if(runCount + 1 >= normStarts.length)
+		{
+			normStarts = Arrays.copyOf(normStarts, normStarts.length * 2);
+			origStarts = Arrays.copyOf(origStarts, origStarts.length * 2);
+		}
+
+		normStarts[runCount] = normStart;
+		origStarts[runCount] = origStart;
+		runCount++;
+	}
+
+	private boolean isOneToOne(int run)
+	{
+		return (normStarts[run + 1] - normStarts[run]) == (origStarts[run + 1] - origStarts[run]);
+	}
+
+	// DESCRIPTION : Returns the last run starting at or before the offset (in the given starts) :
+	private int findRun(int[] starts, int offset)
+	{
+		int low 	= 0;
+		int high 	= runCount - 1;
+
+		while(low < high)
+		{
+			int mid = (low + high + 1) >>> 1;
+
+			if(starts[mid] <= offset)
+			{
+				low = mid;
+			}
+			else
+			{
+				high = mid - 1;
+			}
+		}
+
+		return low;
+	}
+
+	// DESCRIPTION : True if a segment starts at the offset (it is not a low surrogate nor a combining mark) :
+	static boolean isSegmentStart(CharSequence text, int offset)
+	{
+		if(offset == 0 || offset >= text.length())
+		{
+			return true;
+		}
+
+		if(Character.isLowSurrogate(text.charAt(offset)) && Character.isHighSurrogate(text.charAt(offset - 1)))
+		{
+			return false;
+		}
+
+		switch(Character.getType(Character.codePointAt(text, offset)))
+		{
+			case Character.NON_SPACING_MARK:
+			case Character.COMBINING_SPACING_MARK:
+			case Character.ENCLOSING_MARK:
+				return false;
+
+			default:
+				return true;
+		}
+	}
+}
@@ -0,0 +1,235 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// DESCRIPTION : Regular expression search for the find plug-in. A search text written as /pattern/flags is a
+//               regular expression (flags : i = ignore case, m = multiline, s = dot matches newlines, x = comments).
+//               Compiled patterns are cached, and the text is read through a wrapper that aborts the match once
+//               its time budget is spent (or the search thread is interrupted), so a pattern that backtracks
+//               catastrophically can't hang the search.
+public class RegexSearch
+{
+	// CLASS FIELDS :
+	private static final long TIME_BUDGET_NANOS 			= 5_000_000_000L;
+	private static final int PATTERN_CACHE_SIZE 			= 32;
+	private static final Pattern REGEX_SYNTAX 				= Pattern.compile("/(.*)/([imsx]*)", Pattern.DOTALL);
+
+	private static final Map<String, Pattern> patternCache 	= new LinkedHashMap<String, Pattern>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Pattern> eldest)
+		{
+			return size() > PATTERN_CACHE_SIZE;
+		}
+	};
+
+	// DESCRIPTION : True if the search text is written as a regular expression (/pattern/flags) :
+	public static boolean isRegex(String strToFind)
+	{
+		return strToFind.length() > 2 && REGEX_SYNTAX.matcher(strToFind).matches();
+	}
+
+	// DESCRIPTION : Returns the compiled pattern of a /pattern/flags search text (compiling it only the first time).
+	//               Throws a PatternSyntaxException if the pattern is invalid.
+	public static Pattern compile(String strToFind)
+	{
+		// Declare variables :
+		Matcher syntax 	= REGEX_SYNTAX.matcher(strToFind);
+		int flags 		= 0;
+
+		if(!syntax.matches())
+		{
+			throw new IllegalArgumentException(strToFind);
+		}
+
+		for(char flag : syntax.group(2).toCharArray())
+		{
+			switch(flag)
+			{
+				case 'i': flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE; break;
+				case 'm': flags |= Pattern.MULTILINE; 								break;
+				case 's': flags |= Pattern.DOTALL; 									break;
+				case 'x': flags |= Pattern.COMMENTS; 								break;
+			}
+		}
+
+		String key = flags + "/" + syntax.group(1);
+
+		synchronized(patternCache)
+		{
+			Pattern pattern = patternCache.get(key);
+
+			if(pattern == null)
+			{
+				pattern = Pattern.compile(syntax.group(1), flags);
+				patternCache.put(key, pattern);
+			}
+
+			return pattern;
+		}
+	}
+
+	// DESCRIPTION : Finds the first match starting at or after the offset (an empty match at the offset itself is
+	//               skipped, so searching again from a match moves on). Returns null if there is none.
+	public static SearchIndex.Match find(CharSequence text, Pattern pattern, int fromOffset)
+	{
+		Matcher matcher = pattern.matcher(new DeadlineCharSequence(text, System.nanoTime() + TIME_BUDGET_NANOS));
+
+		for(int from = fromOffset; from <= text.length(); from++)
+		{
+			if(!matcher.find(from))
+			{
+				return null;
+			}
+
+			if(matcher.end() > fromOffset)
+			{
+				return new SearchIndex.Match(matcher.start(), matcher.end(), -1);
+			}
+		}
+
+		return null;
+	}
+
+	// DESCRIPTION : Finds all the matches, with their line, in order :
+	public static ArrayList<SearchIndex.Match> findAll(CharSequence text, Pattern pattern)
+	{
+		// Declare variables :
+		ArrayList<SearchIndex.Match> matches 	= new ArrayList<>();
+		Matcher matcher 						= pattern.matcher(new DeadlineCharSequence(text, System.nanoTime() + TIME_BUDGET_NANOS));
+		int line 								= 0;
+		int counted 							= 0;
+
+		while(matcher.find())
+		{
+			for(; counted < matcher.start(); counted++)
+			{
+				if(text.charAt(counted) == '\n')
+				{
+					line++;
+				}
+			}
+
+			matches.add(new SearchIndex.Match(matcher.start(), matcher.end(), line));
+		}
+
+		return matches;
+	}
+
+	// DESCRIPTION : Adds to the edits the replacement of every match (or of the first one) starting at or after the
+	//               offset, and returns how many matches were replaced. The replacement may refer to the groups ($1,
+	//               ${name}) as in Matcher.replaceAll, a replacement without any reference is shared by all the edits.
+	public static int replace(CharSequence text, Pattern pattern, String replacement, int fromOffset, boolean isReplaceAll, EditBuilder_Interface edits)
+	{
+		// Declare variables :
+		Matcher matcher 		= pattern.matcher(new DeadlineCharSequence(text, System.nanoTime() + TIME_BUDGET_NANOS));
+		boolean isLiteral 		= replacement.indexOf('$') < 0 && replacement.indexOf('\\') < 0;
+		StringBuilder expanded 	= new StringBuilder();
+		boolean isFound 		= matcher.find(fromOffset);
+		int appended 			= 0;
+		int count 				= 0;
+
+		// Like find, a single replace skips an empty match at the offset itself :
+		if(isFound && !isReplaceAll && matcher.end() <= fromOffset)
+		{
+			isFound = matcher.find();
+		}
+
+		while(isFound)
+		{
+			String matchReplacement = replacement;
+
+			if(!isLiteral)
+			{
+				// appendReplacement adds the text since the previous match before the expanded replacement :
+				expanded.setLength(0);
+				matcher.appendReplacement(expanded, replacement);
+				matchReplacement 	= expanded.substring(matcher.start() - appended);
+				appended 			= matcher.end();
+			}
+
+			edits.replaceRange(matcher.start(), matcher.end(), matchReplacement);
+			count++;
+
+			isFound = isReplaceAll && matcher.find();
+		}
+
+		return count;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// DEADLINE CHAR SEQUENCE :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Text wrapper checking the time budget (and the thread's interrupt flag) every few thousand reads.
+	//               The regex engine reads the text through charAt, so even a match stuck backtracking is stopped.
+	private static final class DeadlineCharSequence implements CharSequence
+	{
+		// CLASS FIELDS :
+		private static final int CHECK_INTERVAL = 4096;
+
+		private final CharSequence text;
+		private final long deadline;
+		private int reads 						= 0;
+
+		// CONSTRUCTOR :
+		DeadlineCharSequence(CharSequence text, long deadline)
+		{
+			this.text 		= text;
+			this.deadline 	= deadline;
+		}
+
+		@Override
+		public char charAt(int index)
+		{
+			if(++reads == CHECK_INTERVAL)
+			{
+				reads = 0;
+
+				if(Thread.currentThread().isInterrupted() || System.nanoTime() > deadline)
+				{
+					throw new SearchTimeoutException();
+				}
+			}
+
+			return text.charAt(index);
+		}
+
+		@Override
+		public int length()
+		{
+			return text.length();
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end)
+		{
+			return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+		}
+
+		@Override
+		public String toString()
+		{
+			return text.toString();
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// SEARCH TIMEOUT EXCEPTION :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	public static final class SearchTimeoutException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+
+		SearchTimeoutException()
+		{
+			super("Regular expression search took too long", null, false, false);
+		}
+	}
+}
@@ -0,0 +1,500 @@
+package texteditor;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+// DESCRIPTION : Normalised (NFKC + lower case) shadow of the document used by the find plug-in. The document is
+//               cut into blocks which each keep their normalised text and the map of its offsets back to the
+//               original ones (see NormalizedText). An edit only marks the blocks it touches as dirty, and they
+//               are normalised again the next time a search needs them, so a search is an indexOf over cached
+//               text instead of normalising everything after the caret again. The blocks are also the unit of
+//               work for normalising and for finding all the matches in parallel.
+public class SearchIndex
+{
+	// CLASS FIELDS :
+	private static final int BLOCK_SIZE 	= 8 * 1024;
+	private static final int CHUNK_BLOCKS 	= 16;
+
+	private ArrayList<Block> blocks 		= new ArrayList<>();
+	private boolean isStale 				= true;
+
+	// DESCRIPTION : Updates the block lengths after the text at offset was replaced (the blocks touched are
+	//               normalised again on the next search) :
+	public void textReplaced(int offset, int removedLen, int insertedLen)
+	{
+		if(isStale)
+		{
+			return;
+		}
+
+		// Declare variables :
+		int idx 		= 0;
+		int blockStart 	= 0;
+		int removedEnd 	= offset + removedLen;
+		Block block 	= null;
+
+		// Find the block containing the offset (an insert at the very end goes to the last block) :
+		while(idx < blocks.size() - 1 && blockStart + blocks.get(idx).length <= offset)
+		{
+			blockStart += blocks.get(idx).length;
+			idx++;
+		}
+
+		block = blocks.get(idx);
+
+		// Merge the following blocks the removed text reaches into into this one :
+		while(idx + 1 < blocks.size() && blockStart + block.length < removedEnd)
+		{
+			block.length += blocks.remove(idx + 1).length;
+		}
+
+		block.length 	+= insertedLen - removedLen;
+		block.isDirty 	= true;
+	}
+
+	// DESCRIPTION : Forgets everything (the whole text was replaced), the index is rebuilt on the next search :
+	public void documentReset()
+	{
+		blocks.clear();
+		isStale = true;
+	}
+
+	// DESCRIPTION : Finds the first match of the (normalised) search text starting at or after the offset, returns
+	//               null if there is none. The match offsets are in the original text.
+	public Match find(CharSequence text, String strToFind, int fromOffset)
+	{
+		// Declare variables :
+		String strToFind_n 	= normalize(strToFind);
+		int idx 			= 0;
+		int blockStart 		= 0;
+		int normFrom 		= 0;
+
+		if(strToFind_n.isEmpty())
+		{
+			return null;
+		}
+
+		refresh(text);
+
+		// Find the block containing the offset, and where the offset falls in its normalised text :
+		while(idx < blocks.size() && blockStart + blocks.get(idx).length <= fromOffset)
+		{
+			blockStart += blocks.get(idx).length;
+			idx++;
+		}
+
+		if(idx < blocks.size())
+		{
+			normFrom = blocks.get(idx).normalized.toNormalized(fromOffset - blockStart);
+		}
+
+		for(; idx < blocks.size(); idx++)
+		{
+			int found = findInBlock(idx, strToFind_n, normFrom);
+
+			if(found >= 0)
+			{
+				return toMatch(idx, blockStart, found, strToFind_n.length(), -1);
+			}
+
+			blockStart 	+= blocks.get(idx).length;
+			normFrom 	= 0;
+		}
+
+		return null;
+	}
+
+	// DESCRIPTION : Finds all the (non-overlapping) matches of the search text, in order :
+	public ArrayList<Match> findAll(CharSequence text, String strToFind)
+	{
+		ArrayList<Match> matches = new ArrayList<>();
+
+		findAll(text, strToFind, matches::addAll);
+
+		return matches;
+	}
+
+	// DESCRIPTION : Finds all the (non-overlapping) matches of the search text, and hands them over chunk by chunk,
+	//               in order, as soon as the chunks before are done. The blocks are split into chunks scanned in
+	//               parallel, a chunk also checking for matches straddling its end.
+	public void findAll(CharSequence text, String strToFind, Consumer<ArrayList<Match>> chunkMatches)
+	{
+		// Declare variables :
+		String strToFind_n 							= normalize(strToFind);
+		ArrayList<Future<ChunkResult>> futures 		= new ArrayList<>();
+		ArrayList<int[]> chunkBounds 				= new ArrayList<>();
+		int blockStart 								= 0;
+		int lineStart 								= 0;
+		int lastEnd 								= 0;
+
+		if(strToFind_n.isEmpty())
+		{
+			return;
+		}
+
+		refresh(text);
+
+		for(int first = 0; first < blocks.size(); first += CHUNK_BLOCKS)
+		{
+			int chunkFirst 	= first;
+			int chunkStart 	= blockStart;
+			int chunkEnd 	= Math.min(first + CHUNK_BLOCKS, blocks.size());
+
+			futures.add(ForkJoinPool.commonPool().submit(() -> scanChunk(chunkFirst, chunkEnd, chunkStart, strToFind_n, chunkStart)));
+			chunkBounds.add(new int[] {chunkFirst, chunkEnd, chunkStart});
+
+			for(int idx = first; idx < chunkEnd; idx++)
+			{
+				blockStart += blocks.get(idx).length;
+			}
+		}
+
+		// Merge the chunk results in order, making the line numbers absolute :
+		for(int i = 0; i < futures.size(); i++)
+		{
+			ChunkResult chunk 			= getResult(futures.get(i));
+			int[] bounds 				= chunkBounds.get(i);
+			ArrayList<Match> matches 	= new ArrayList<>(chunk.matches.size());
+
+			// A match overlapping the one straddling the end of the previous chunk is dropped, so search the chunk
+			// again after that one (with e.g. "aa" in "aaaa", the next match starts inside the dropped one) :
+			if(!chunk.matches.isEmpty() && chunk.matches.get(0).start < lastEnd)
+			{
+				chunk = scanChunk(bounds[0], bounds[1], bounds[2], strToFind_n, lastEnd);
+			}
+
+			for(Match match : chunk.matches)
+			{
+				matches.add(new Match(match.start, match.end, lineStart + match.line));
+				lastEnd = match.end;
+			}
+
+			lineStart += chunk.newlines;
+
+			if(!matches.isEmpty())
+			{
+				chunkMatches.accept(matches);
+			}
+		}
+	}
+
+	// DESCRIPTION : Normalises a text the same way the document is :
+	public static String normalize(CharSequence text)
+	{
+		return NormalizedText.of(text).getText();
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// BLOCK HANDLING :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+
+	// DESCRIPTION : Brings the blocks up to date with the text (normalises the dirty blocks only). The blocks are
+	//               first merged/cut as needed, then the dirty ones are normalised.
+	private void refresh(CharSequence text)
+	{
+		// Safety net in case an edit was missed :
+		if(!isStale && totalLength() != text.length())
+		{
+			documentReset();
+		}
+
+		if(isStale)
+		{
+			blocks.add(new Block(text.length()));
+			isStale = false;
+		}
+
+		int blockStart = 0;
+
+		for(int idx = 0; idx < blocks.size(); idx++)
+		{
+			Block block = blocks.get(idx);
+
+			if(!block.isDirty)
+			{
+				blockStart += block.length;
+				continue;
+			}
+
+			// Drop the blocks emptied by deletes :
+			if(block.length == 0 && blocks.size() > 1)
+			{
+				blocks.remove(idx);
+				idx--;
+				continue;
+			}
+
+			// A block can't start with a combining mark, it has to be normalised with the char before it :
+			if(idx > 0 && !NormalizedText.isSegmentStart(text, blockStart))
+			{
+				Block prev 		= blocks.get(idx - 1);
+				prev.length 	+= blocks.remove(idx).length;
+				prev.isDirty 	= true;
+				blockStart 		-= prev.length - block.length;
+				idx 			-= 2;
+				continue;
+			}
+
+			// Cut a block grown too big by inserts :
+			if(block.length > 2 * BLOCK_SIZE)
+			{
+				int cut = blockStart + BLOCK_SIZE;
+
+				while(cut < blockStart + block.length && !NormalizedText.isSegmentStart(text, cut))
+				{
+					cut++;
+				}
+
+				if(cut < blockStart + block.length)
+				{
+					Block next 		= new Block(blockStart + block.length - cut);
+					block.length 	= cut - blockStart;
+					blocks.add(idx + 1, next);
+				}
+			}
+
+			blockStart += block.length;
+		}
+
+		normalizeDirtyBlocks(text);
+	}
+
+	// DESCRIPTION : Normalises the dirty blocks, in parallel :
+	private void normalizeDirtyBlocks(CharSequence text)
+	{
+		// Declare variables :
+		ArrayList<Block> dirty 	= new ArrayList<>();
+		int[] starts 			= new int[blocks.size()];
+		int blockStart 			= 0;
+
+		for(Block block : blocks)
+		{
+			if(block.isDirty)
+			{
+				starts[dirty.size()] = blockStart;
+				dirty.add(block);
+			}
+
+			blockStart += block.length;
+		}
+
+		// (parallel streams run on the common ForkJoinPool)
+		IntStream.range(0, dirty.size()).parallel().forEach(i ->
+		{
+			Block block 		= dirty.get(i);
+
+			block.normalized 	= NormalizedText.of(text.subSequence(starts[i], starts[i] + block.length));
+			block.isDirty 		= false;
+		});
+	}
+
+	// DESCRIPTION : Finds the matches starting in a chunk of blocks at or after fromOffset, and counts its lines :
+	private ChunkResult scanChunk(int first, int end, int chunkStart, String strToFind_n, int fromOffset)
+	{
+		// Declare variables :
+		ChunkResult chunk 	= new ChunkResult();
+		int blockStart 		= chunkStart;
+		int normFrom 		= 0;
+		int idx 			= first;
+
+		// Skip the blocks before the offset (their lines still count) :
+		while(idx < end && blockStart + blocks.get(idx).length <= fromOffset)
+		{
+			String normTxt = blocks.get(idx).normalized.getText();
+
+			chunk.newlines 	+= countNewlines(normTxt, 0, normTxt.length());
+			blockStart 		+= blocks.get(idx).length;
+			idx++;
+		}
+
+		if(idx < end && fromOffset > blockStart)
+		{
+			normFrom = blocks.get(idx).normalized.toNormalized(fromOffset - blockStart);
+		}
+
+		for(; idx < end; idx++)
+		{
+			String normTxt 	= blocks.get(idx).normalized.getText();
+			int counted 	= 0;
+			int found 		= findInBlock(idx, strToFind_n, normFrom);
+
+			while(found >= 0)
+			{
+				Match match = null;
+
+				chunk.newlines 	+= countNewlines(normTxt, counted, found);
+				counted 		= found;
+				match 			= toMatch(idx, blockStart, found, strToFind_n.length(), chunk.newlines);
+
+				chunk.matches.add(match);
+				normFrom 	= found + strToFind_n.length();
+				found 		= (normFrom < normTxt.length()) ? findInBlock(idx, strToFind_n, normFrom) : -1;
+			}
+
+			chunk.newlines 	+= countNewlines(normTxt, counted, normTxt.length());
+			blockStart 		+= blocks.get(idx).length;
+
+			// A match straddling the end of the block carries on in the next one :
+			normFrom = Math.max(0, normFrom - normTxt.length());
+		}
+
+		return chunk;
+	}
+
+	// DESCRIPTION : Finds the first match starting in the block at or after normFrom (it may end in the blocks after) :
+	private int findInBlock(int idx, String strToFind_n, int normFrom)
+	{
+		if(normFrom > blocks.get(idx).normalized.getText().length())
+		{
+			return -1;
+		}
+
+		int found = blocks.get(idx).normalized.getText().indexOf(strToFind_n, normFrom);
+
+		return (found >= 0) ? found : findAcrossBoundary(idx, strToFind_n, normFrom);
+	}
+
+	// DESCRIPTION : Looks for a match starting in the block at or after normFrom and ending in the blocks after it :
+	private int findAcrossBoundary(int idx, String strToFind_n, int normFrom)
+	{
+		// Declare variables :
+		String normTxt 		= blocks.get(idx).normalized.getText();
+		int tailStart 		= Math.max(normFrom, normTxt.length() - (strToFind_n.length() - 1));
+		StringBuilder sb 	= new StringBuilder(normTxt.substring(tailStart));
+		int tailLen 		= sb.length();
+		int found 			= -1;
+
+		for(int next = idx + 1; next < blocks.size() && sb.length() < tailLen + strToFind_n.length() - 1; next++)
+		{
+			sb.append(blocks.get(next).normalized.getText());
+		}
+
+		found = sb.indexOf(strToFind_n);
+
+		// (a match starting after the tail is entirely in the next blocks, it is found when searching them)
+		return (found >= 0 && found < tailLen) ? tailStart + found : -1;
+	}
+
+	// DESCRIPTION : Returns the original offset just after the source of the normalised char before normEnd (which
+	//               can be past the end of the block) :
+	private int originalEnd(int idx, int blockStart, int normEnd)
+	{
+		Block block = blocks.get(idx);
+
+		while(normEnd > block.normalized.getText().length())
+		{
+			normEnd 	-= block.normalized.getText().length();
+			blockStart 	+= block.length;
+			block 		= blocks.get(++idx);
+		}
+
+		return blockStart + block.normalized.toOriginalEnd(normEnd);
+	}
+
+	// DESCRIPTION : Converts a match found in the normalised text of a block to original offsets :
+	private Match toMatch(int idx, int blockStart, int found, int normLength, int line)
+	{
+		int start = blockStart + blocks.get(idx).normalized.toOriginal(found);
+
+		return new Match(start, originalEnd(idx, blockStart, found + normLength), line);
+	}
+
+	// (newlines are kept as they are by the normalisation, so they can be counted in the normalised text)
+	private static int countNewlines(String normTxt, int from, int to)
+	{
+		int count = 0;
+
+		for(int i = from; i < to; i++)
+		{
+			if(normTxt.charAt(i) == '\n')
+			{
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	private static ChunkResult getResult(Future<ChunkResult> future)
+	{
+		try
+		{
+			return future.get();
+		}
+		catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+		catch(ExecutionException e)
+		{
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private int totalLength()
+	{
+		int length = 0;
+
+		for(Block block : blocks)
+		{
+			length += block.length;
+		}
+
+		return length;
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// BLOCK :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	private static final class Block
+	{
+		// CLASS FIELDS :
+		int length 					= 0;
+		NormalizedText normalized 	= null;
+		boolean isDirty 			= true;
+
+		// CONSTRUCTOR :
+		Block(int length)
+		{
+			this.length = length;
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// MATCH :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	public static final class Match
+	{
+		// CLASS FIELDS :
+		public final int start;
+		public final int end;
+		public final int line;
+
+		// CONSTRUCTOR :
+		Match(int start, int end, int line)
+		{
+			this.start 	= start;
+			this.end 	= end;
+			this.line 	= line;
+		}
+	}
+
+
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	// CHUNK RESULT :
+	// ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+	private static final class ChunkResult
+	{
+		// CLASS FIELDS :
+		ArrayList<Match> matches 	= new ArrayList<>();
+		int newlines 				= 0;
+	}
+}